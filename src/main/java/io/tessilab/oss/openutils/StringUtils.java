@@ -29,8 +29,9 @@ public class StringUtils {
 
     private static final Pattern INCOMBININGDIACRITICALMARKSPATTERN = Pattern.compile("[\\p{InCombiningDiacriticalMarks}]");
     private static final Pattern DIGITSPATTERN = Pattern.compile("[0123456789]");
-    private static Pattern lastNonAsciiToKeepPattern = null;
-    private static String[] lastNonAsciiToKeep = new String[0];
+    private static final String[] WORD_NON_ASCII_TO_KEEP = { "\u20ac" };
+    // the pattern of the last chars to keep, shared by the threads
+    private static volatile NonAsciiPattern lastNonAsciiPattern = null;
 
     private StringUtils() {
         // dummy private constructor
@@ -156,8 +157,8 @@ public class StringUtils {
             str = INCOMBININGDIACRITICALMARKSPATTERN.matcher(str).replaceAll("");
         }
 
-        Pattern nonAsciiRegex;
-        if (lastNonAsciiToKeepPattern == null || !Arrays.equals(nonAsciiToKeep, lastNonAsciiToKeep)) {
+        NonAsciiPattern nonAsciiPattern = lastNonAsciiPattern;
+        if (nonAsciiPattern == null || !Arrays.equals(nonAsciiToKeep, nonAsciiPattern.toKeep)) {
             // Prepare the symbols to save
             StringBuilder regexBuilder = new StringBuilder("^\\p{ASCII}&&[^\\p{InCombiningDiacriticalMarks}]");
             if (nonAsciiToKeep != null && nonAsciiToKeep.length > 0) {
@@ -169,11 +170,12 @@ public class StringUtils {
             }
             regexBuilder.insert(0, "[");
             regexBuilder.append("]");
-            lastNonAsciiToKeepPattern = Pattern.compile(regexBuilder.toString());
-            lastNonAsciiToKeep = nonAsciiToKeep == null ? nonAsciiToKeep : Arrays.copyOf(nonAsciiToKeep, nonAsciiToKeep.length);
+            nonAsciiPattern = new NonAsciiPattern(
+                    nonAsciiToKeep == null ? nonAsciiToKeep : Arrays.copyOf(nonAsciiToKeep, nonAsciiToKeep.length),
+                    Pattern.compile(regexBuilder.toString()));
+            lastNonAsciiPattern = nonAsciiPattern;
         }
-        nonAsciiRegex = lastNonAsciiToKeepPattern;
-        str = nonAsciiRegex.matcher(str).replaceAll("");
+        str = nonAsciiPattern.pattern.matcher(str).replaceAll("");
 
         if (removeDigits) {
             str = DIGITSPATTERN.matcher(str).replaceAll("");
@@ -187,6 +189,17 @@ public class StringUtils {
         return str.trim();
     }
 
+    /**
+     * The normalization of the words (of the hOCR documents, or of the
+     * dictionaries): accents and non-ASCII chars (except the euro sign)
+     * removed, lower case.
+     * @param s The word to normalize
+     * @return The normalized word.
+     */
+    public static String normalizeWord(String s) {
+        return cleanUpString(s, true, false, true, WORD_NON_ASCII_TO_KEEP);
+    }
+
     /**
      * Bans all the string specied in stringlist from the given string
      * @param s The string to modify
@@ -380,4 +393,20 @@ public class StringUtils {
     public static boolean isNotEmpty(String s) {
         return s != null && s.length() > 0;
     }
+
+    /**
+     * The chars to keep, and the pattern of the chars to remove: they are
+     * changed together.
+     */
+    private static class NonAsciiPattern {
+
+        private final String[] toKeep;
+        private final Pattern pattern;
+
+        private NonAsciiPattern(String[] toKeep, Pattern pattern) {
+            this.toKeep = toKeep;
+            this.pattern = pattern;
+        }
+
+    }
 }
@@ -17,9 +17,21 @@
 package io.tessilab.oss.openutils.dictionary;
 
 import io.tessilab.oss.openutils.distance.words.Distance;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class in an implementation of a Burkhard-Keller tree in Java. The
@@ -35,15 +47,44 @@ import java.util.TreeMap;
  * 
  * Searching the tree yields O(logn), which is a huge upgrade over brute force
  * 
+ * The queries keep their state local, so several threads can query the same
+ * tree at once (provided the distance is thread-safe), as long as no term is
+ * added or removed meanwhile.
+ * 
+ * The removed terms are only marked as removed (tombstones): the queries still
+ * go through their nodes, but skip them. Once the ratio of removed terms
+ * reaches {@link #getMaxDeadRatio()}, the tree is compacted: it is rebuilt
+ * from its live terms, in the background by default, and the additions and
+ * removals done meanwhile are replayed on the new tree before it replaces the
+ * old one.
+ * 
  * @author Josh Clemm
  *
  */
 public class BKTree<E> {
 
-    private Node root;
-    private HashMap<E, Double> matches;
+    /**
+     * Below this number of terms, a subtree is built by adding the terms one by
+     * one. Visibility: package
+     */
+    static final int SEQUENTIAL_BUILD_THRESHOLD = 2048;
+
+    /**
+     * The default ratio of removed terms (among all the terms of the nodes)
+     * above which the tree is compacted.
+     */
+    public static final double DEFAULT_MAX_DEAD_RATIO = 0.25;
+
+    private volatile Node root;
     private Distance<E> distance;
-    protected E bestTerm;
+
+    // number of live terms, and of removed terms still in the nodes
+    private int size;
+    private int deadCount;
+    private double maxDeadRatio = DEFAULT_MAX_DEAD_RATIO;
+    private Executor compactionExecutor = ForkJoinPool.commonPool();
+    // the operations done while a compaction runs, null otherwise
+    private List<PendingOperation<E>> pendingOperations;
 
     protected BKTree() {
 
@@ -54,12 +95,229 @@ public class BKTree<E> {
         this.distance = distance;
     }
 
-    public void add(E term) {
-        if (root != null) {
-            root.add(term);
-        } else {
+    /**
+     * @return The distance between the terms of this tree.
+     */
+    public Distance<E> getDistance() {
+        return distance;
+    }
+
+    public synchronized void add(E term) {
+        if (insert(term))
+            deadCount--;
+        size++;
+        if (pendingOperations != null)
+            pendingOperations.add(new PendingOperation<>(term, false));
+    }
+
+    /**
+     * Removes a term: its node is marked as removed, and the tree is compacted
+     * if the ratio of removed terms is reached.
+     * 
+     * @param term
+     *            The term to remove.
+     * @return TRUE if the term was in the tree.
+     */
+    public synchronized boolean remove(E term) {
+        if (!delete(term))
+            return false;
+        size--;
+        deadCount++;
+        if (pendingOperations != null)
+            pendingOperations.add(new PendingOperation<>(term, true));
+        if (deadCount > maxDeadRatio * (size + deadCount))
+            startCompaction();
+        return true;
+    }
+
+    /**
+     * @return The number of terms in the tree.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of removed terms whose nodes are still in the tree.
+     */
+    public synchronized int getDeadCount() {
+        return deadCount;
+    }
+
+    public synchronized double getMaxDeadRatio() {
+        return maxDeadRatio;
+    }
+
+    public synchronized Executor getCompactionExecutor() {
+        return compactionExecutor;
+    }
+
+    /**
+     * Sets when and where the tree is compacted.
+     * 
+     * @param maxDeadRatio
+     *            The ratio of removed terms (among all the terms of the
+     *            nodes) above which the tree is compacted, between 0 and 1 (1
+     *            to never compact it automatically).
+     * @param executor
+     *            The executor rebuilding the tree, or null to rebuild it in
+     *            the thread removing the term.
+     */
+    public synchronized void setCompaction(double maxDeadRatio, Executor executor) {
+        if (!(maxDeadRatio >= 0 && maxDeadRatio <= 1))
+            throw new IllegalArgumentException("The ratio of removed terms must be between 0 and 1: " + maxDeadRatio);
+        this.maxDeadRatio = maxDeadRatio;
+        this.compactionExecutor = executor;
+    }
+
+    /**
+     * Rebuilds the tree from its live terms now, if some terms were removed.
+     * A compaction running in the background is abandoned.
+     */
+    public synchronized void compact() {
+        pendingOperations = null;
+        if (deadCount > 0) {
+            adopt(rebuild(liveTerms()));
+            deadCount = 0;
+        }
+    }
+
+    private void startCompaction() {
+        if (pendingOperations != null)
+            return;
+        List<E> live = liveTerms();
+        if (compactionExecutor == null) {
+            adopt(rebuild(live));
+            deadCount = 0;
+            return;
+        }
+        List<PendingOperation<E>> operations = new ArrayList<>();
+        pendingOperations = operations;
+        try {
+            CompletableFuture.supplyAsync(() -> rebuild(live), compactionExecutor)
+                    .whenComplete((rebuilt, error) -> finishCompaction(operations, rebuilt));
+        } catch (RejectedExecutionException e) {
+            pendingOperations = null;
+        }
+    }
+
+    /**
+     * Replays the operations done since the compaction started on the
+     * rebuilt tree, which then replaces the nodes of this tree.
+     */
+    private synchronized void finishCompaction(List<PendingOperation<E>> operations, BKTree<E> rebuilt) {
+        // abandoned
+        if (pendingOperations != operations)
+            return;
+        pendingOperations = null;
+        // failed: the tree keeps its removed terms until the next removal
+        if (rebuilt == null)
+            return;
+        int dead = 0;
+        for (PendingOperation<E> operation : operations) {
+            if (operation.removal) {
+                if (rebuilt.delete(operation.term))
+                    dead++;
+            } else if (rebuilt.insert(operation.term)) {
+                dead--;
+            }
+        }
+        adopt(rebuilt);
+        deadCount = dead;
+        // too many terms were removed meanwhile
+        if (deadCount > maxDeadRatio * (size + deadCount))
+            startCompaction();
+    }
+
+    /**
+     * Sets the counts of a tree whose nodes were built at once. Visibility:
+     * package
+     */
+    void resetCounts(int size) {
+        this.size = size;
+        deadCount = 0;
+    }
+
+    /**
+     * Adds a term to the nodes.
+     * <p>
+     * Visibility: package
+     * 
+     * @return TRUE if the term was a removed term, which is live again.
+     */
+    boolean insert(E term) {
+        if (root == null) {
             root = new Node(term);
+            return false;
         }
+        return root.add(term);
+    }
+
+    /**
+     * Marks the node of a term as removed.
+     * <p>
+     * Visibility: package
+     * 
+     * @return TRUE if the term was in the tree.
+     */
+    boolean delete(E term) {
+        Node node = root;
+        while (node != null) {
+            double score = distance.getDistance(term, node.term);
+            if (score == 0 && !node.deleted && node.term.equals(term)) {
+                node.deleted = true;
+                return true;
+            }
+            node = node.children.get(score);
+        }
+        return false;
+    }
+
+    /**
+     * @return The live terms, in preorder. Visibility: package
+     */
+    List<E> liveTerms() {
+        List<E> terms = new ArrayList<>(size);
+        if (root != null)
+            root.collectLiveTerms(terms);
+        return terms;
+    }
+
+    /**
+     * Builds a new tree from terms, with the same distance. Visibility:
+     * package
+     */
+    BKTree<E> rebuild(List<E> terms) {
+        return build(terms.stream(), distance);
+    }
+
+    /**
+     * Takes the nodes of a rebuilt tree. Visibility: package
+     */
+    void adopt(BKTree<E> rebuilt) {
+        root = rebuilt.root;
+    }
+
+    /**
+     * Builds a tree from a stream of terms, in parallel on the common fork/join
+     * pool. The tree is the same as the one built by adding the terms one by
+     * one, in the order of the stream: the first term is the root, and the
+     * other terms are partitioned by their distance to it, each part being
+     * built the same way in its own task. The distance must be thread-safe.
+     * 
+     * @param terms
+     *            The terms to add.
+     * @param distance
+     *            The distance of the tree.
+     * @return The tree.
+     */
+    public static <E> BKTree<E> build(Stream<E> terms, Distance<E> distance) {
+        BKTree<E> tree = new BKTree<>(distance);
+        List<E> list = terms.collect(Collectors.toList());
+        if (!list.isEmpty())
+            tree.root = ForkJoinPool.commonPool().invoke(tree.new BuildTask(list));
+        tree.resetCounts(list.size());
+        return tree;
     }
 
     /**
@@ -72,11 +330,130 @@ public class BKTree<E> {
      * @return
      */
     public Map<E, Double> query(E searchObject, double threshold) {
-        matches = new HashMap<>();
-        root.query(searchObject, threshold, matches);
+        Map<E, Double> matches = new HashMap<>();
+        Node current = root;
+        if (current != null)
+            current.query(searchObject, threshold, matches);
         return matches;
     }
 
+    /**
+     * Finds all the terms within a threshold of the search term.
+     * 
+     * @param term
+     *            The search term.
+     * @param threshold
+     *            The maximum distance (included).
+     * @return The matches, sorted by increasing distance.
+     */
+    public List<Match<E>> findAllWithin(E term, double threshold) {
+        List<Match<E>> result = new ArrayList<>();
+        query(term, threshold).forEach((t, d) -> result.add(new Match<>(t, d)));
+        result.sort(Comparator.comparingDouble(Match::getDistance));
+        return result;
+    }
+
+    /**
+     * Finds the k closest terms to the search term.
+     * 
+     * @param term
+     *            The search term.
+     * @param k
+     *            The number of matches wanted.
+     * @return At most k matches, sorted by increasing distance, then by term
+     *         if the terms are {@link Comparable}: the ties at the k-th
+     *         position keep the first terms, whatever the tree.
+     */
+    public List<Match<E>> findBestMatches(E term, int k) {
+        PriorityQueue<Match<E>> best = newWorstFirstQueue(k);
+        Node current = root;
+        if (current != null)
+            current.findBestMatches(term, k, best);
+        return sortedMatches(best);
+    }
+
+    /**
+     * Visibility: package
+     */
+    static <E> PriorityQueue<Match<E>> newWorstFirstQueue(int k) {
+        return newWorstFirstQueue(k, byDistanceThenTerm());
+    }
+
+    /**
+     * Like {@link Match#byDistanceThenTerm()}, for any terms: the terms which
+     * are not comparable are ties. Visibility: package
+     */
+    static <E> Comparator<Match<E>> byDistanceThenTerm() {
+        return (m1, m2) -> {
+            int c = Double.compare(m1.getDistance(), m2.getDistance());
+            return c != 0 ? c : compareTerms(m1.getTerm(), m2.getTerm());
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareTerms(Object term1, Object term2) {
+        if (term1 instanceof Comparable && term2 != null && term1.getClass() == term2.getClass())
+            return ((Comparable) term1).compareTo(term2);
+        return 0;
+    }
+
+    /**
+     * @param order
+     *            The order of the matches, from the best to the worst.
+     *            Visibility: package
+     */
+    static <E> PriorityQueue<Match<E>> newWorstFirstQueue(int k, Comparator<Match<E>> order) {
+        if (k < 1)
+            throw new IllegalArgumentException("The number of matches must be positive.");
+        return new PriorityQueue<>(k + 1, order.reversed());
+    }
+
+    /**
+     * Visibility: package
+     */
+    static <E> List<Match<E>> sortedMatches(PriorityQueue<Match<E>> queue) {
+        List<Match<E>> result = new ArrayList<>(queue);
+        result.sort(byDistanceThenTerm());
+        return result;
+    }
+
+    /**
+     * Adds a match to a bounded worst-first queue (from
+     * {@link #newWorstFirstQueue(int)}) if it is good enough: closer than the
+     * worst kept match, or as close with a lower term. Visibility: package
+     */
+    static <E> void offerMatch(PriorityQueue<Match<E>> best, int k, E term, double distance) {
+        if (best.size() < k) {
+            best.add(new Match<>(term, distance));
+            return;
+        }
+        Match<E> worst = best.peek();
+        int c = Double.compare(distance, worst.getDistance());
+        if (c < 0 || (c == 0 && compareTerms(term, worst.getTerm()) < 0)) {
+            best.poll();
+            best.add(new Match<>(term, distance));
+        }
+    }
+
+    /**
+     * Finds the closest term to the search term, within a threshold.
+     * 
+     * @param term
+     *            The search term.
+     * @param threshold
+     *            The maximum distance (included).
+     * @return The closest term with its distance, or null if there is no term
+     *         within the threshold.
+     */
+    public Match<E> findBestMatch(E term, double threshold) {
+        Node current = root;
+        if (current == null)
+            return null;
+        BestMatch<E> best = new BestMatch<>();
+        current.findBestMatch(term, threshold, best);
+        return best.toMatch();
+    }
+
     /**
      * Attempts to find the closest match to the search term.
      * 
@@ -84,7 +461,8 @@ public class BKTree<E> {
      * @return the edit distance of the best match
      */
     public double find(E term) {
-        return root.findBestMatch(term, Double.MAX_VALUE);
+        Match<E> match = findBestMatch(term, Double.MAX_VALUE);
+        return match == null ? Double.MAX_VALUE : match.getDistance();
     }
 
     /**
@@ -94,9 +472,8 @@ public class BKTree<E> {
      * @return a match that is within the best edit distance of the search term.
      */
     public E findBestWordMatchWithinDistance(E term, double threshold) {
-        bestTerm = null;
-        root.findBestMatch(term, threshold);
-        return root.getBestTerm();
+        Match<E> match = findBestMatch(term, threshold);
+        return match == null ? null : match.getTerm();
     }
 
     /**
@@ -106,8 +483,7 @@ public class BKTree<E> {
      * @return a match that is within the best edit distance of the search term.
      */
     public E findBestWordMatch(E term) {
-        root.findBestMatch(term, Integer.MAX_VALUE);
-        return root.getBestTerm();
+        return findBestWordMatchWithinDistance(term, Integer.MAX_VALUE);
     }
 
     /**
@@ -117,40 +493,180 @@ public class BKTree<E> {
      * @return a match that is within the best edit distance of the search term.
      */
     public Map<E, Double> findBestWordMatchWithDistance(E term) {
-        double d = root.findBestMatch(term, Double.MAX_VALUE);
+        Match<E> match = findBestMatch(term, Double.MAX_VALUE);
         Map<E, Double> returnMap = new HashMap<>();
-        returnMap.put(root.getBestTerm(), d);
+        if (match != null)
+            returnMap.put(match.getTerm(), match.getDistance());
         return returnMap;
     }
 
+    /**
+     * Visits the nodes of the tree in preorder. The tree must not have removed
+     * terms (see {@link #compact()}).
+     * <p>
+     * Visibility: package
+     */
+    void visitNodes(NodeVisitor<E> visitor) {
+        checkNoDeadTerms();
+        if (root != null)
+            root.visit(visitor, -1, 0, new int[] { 0 });
+    }
+
+    /**
+     * Rebuilds the nodes of an empty tree from their preorder description (as
+     * given to a {@link NodeVisitor}), without computing any distance.
+     * <p>
+     * Visibility: package
+     */
+    void restoreNodes(E[] terms, int[] parents, double[] keys) {
+        if (root != null)
+            throw new IllegalStateException("The tree is not empty.");
+        List<Node> nodes = new ArrayList<>(terms.length);
+        for (int i = 0; i < terms.length; i++) {
+            Node node = new Node(terms[i]);
+            if (parents[i] < 0)
+                root = node;
+            else
+                nodes.get(parents[i]).children.put(keys[i], node);
+            nodes.add(node);
+        }
+        resetCounts(terms.length);
+    }
+
+    /**
+     * Visibility: package
+     */
+    synchronized void checkNoDeadTerms() {
+        if (deadCount > 0)
+            throw new IllegalStateException("The tree has removed terms, it must be compacted first.");
+    }
+
+    /**
+     * Visibility: package
+     */
+    interface NodeVisitor<E> {
+
+        /**
+         * @param term
+         *            The term of the node.
+         * @param parent
+         *            The preorder index of the parent node, -1 for the root.
+         * @param key
+         *            The distance between the term and the term of the parent.
+         */
+        void visit(E term, int parent, double key);
+    }
+
+    /**
+     * An addition or a removal done while the tree is compacted.
+     */
+    private static final class PendingOperation<E> {
+
+        private final E term;
+        private final boolean removal;
+
+        private PendingOperation(E term, boolean removal) {
+            this.term = term;
+            this.removal = removal;
+        }
+    }
+
+    /**
+     * The best term found by a search. Visibility: package
+     */
+    static final class BestMatch<E> {
+
+        E term;
+        double distance;
+
+        Match<E> toMatch() {
+            return term == null ? null : new Match<>(term, distance);
+        }
+    }
+
+    /**
+     * Builds the subtree of a list of terms, whose first term is the root.
+     */
+    private class BuildTask extends RecursiveTask<Node> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<E> terms;
+
+        private BuildTask(List<E> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        protected Node compute() {
+            Node node = new Node(terms.get(0));
+            if (terms.size() <= SEQUENTIAL_BUILD_THRESHOLD) {
+                for (int i = 1; i < terms.size(); i++)
+                    node.add(terms.get(i));
+                return node;
+            }
+
+            double[] scores = new double[terms.size()];
+            Arrays.parallelSetAll(scores, i -> i == 0 ? 0 : distance.getDistance(terms.get(i), node.term));
+            // the parts keep the order of the terms
+            TreeMap<Double, List<E>> parts = new TreeMap<>();
+            for (int i = 1; i < scores.length; i++)
+                parts.computeIfAbsent(scores[i], score -> new ArrayList<>()).add(terms.get(i));
+
+            List<BuildTask> tasks = new ArrayList<>(parts.size());
+            for (List<E> part : parts.values())
+                tasks.add(new BuildTask(part));
+            invokeAll(tasks);
+            int i = 0;
+            for (Double score : parts.keySet())
+                node.children.put(score, tasks.get(i++).join());
+            return node;
+        }
+    }
+
     private class Node {
 
         E term;
         TreeMap<Double, Node> children;
+        // TRUE if the term was removed
+        boolean deleted;
 
         public Node(E term) {
             this.term = term;
             children = new TreeMap<>();
         }
 
-        public void add(E term) {
+        public boolean add(E term) {
             double score = distance.getDistance(term, this.term);
+            if (deleted && score == 0 && this.term.equals(term)) {
+                deleted = false;
+                return true;
+            }
 
             Node child = children.get(score);
             if (child != null) {
-                child.add(term);
+                return child.add(term);
             } else {
                 children.put(score, new Node(term));
+                return false;
             }
         }
 
-        public double findBestMatch(E term, double bestDistance) {
+        private void collectLiveTerms(List<E> terms) {
+            if (!deleted)
+                terms.add(term);
+            for (Node child : children.values())
+                child.collectLiveTerms(terms);
+        }
+
+        public double findBestMatch(E term, double bestDistance, BestMatch<E> best) {
             double distanceAtNode = distance.getDistance(term, this.term);
 
             double bestDistance2 = bestDistance;
-            if (distanceAtNode <= bestDistance2) {
+            if (!deleted && distanceAtNode <= bestDistance2) {
                 bestDistance2 = distanceAtNode;
-                bestTerm = this.term;
+                best.term = this.term;
+                best.distance = distanceAtNode;
             }
 
             double possibleBest;
@@ -161,7 +677,7 @@ public class BKTree<E> {
                     continue;
                 if (score > distanceAtNode + bestDistance2)
                     break;
-                possibleBest = entry.getValue().findBestMatch(term, bestDistance2);
+                possibleBest = entry.getValue().findBestMatch(term, bestDistance2, best);
                 if (possibleBest < bestDistance2) {
                     bestDistance2 = possibleBest;
 
@@ -174,14 +690,30 @@ public class BKTree<E> {
             return bestDistance2;
         }
 
-        public E getBestTerm() {
-            return bestTerm;
+        private void visit(NodeVisitor<E> visitor, int parent, double key, int[] counter) {
+            int index = counter[0]++;
+            visitor.visit(term, parent, key);
+            for (Map.Entry<Double, Node> entry : children.entrySet())
+                entry.getValue().visit(visitor, index, entry.getKey(), counter);
+        }
+
+        public void findBestMatches(E term, int k, PriorityQueue<Match<E>> best) {
+            double distanceAtNode = distance.getDistance(term, this.term);
+            if (!deleted)
+                offerMatch(best, k, this.term, distanceAtNode);
+
+            for (Map.Entry<Double, Node> entry : children.entrySet()) {
+                double threshold = best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+                double dist = entry.getKey();
+                if (dist <= distanceAtNode + threshold && dist >= distanceAtNode - threshold)
+                    entry.getValue().findBestMatches(term, k, best);
+            }
         }
 
         public void query(E term, double threshold, Map<E, Double> collected) {
             double distanceAtNode = distance.getDistance(term, this.term);
 
-            if (distanceAtNode <= threshold) {
+            if (!deleted && distanceAtNode <= threshold) {
                 collected.put(this.term, distanceAtNode);
             }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * A frozen trie flattened in primitive arrays. The nodes are numbered in
+ * breadth-first order, so the children of a node are contiguous and sorted by
+ * their label: the children of <b>node</b> are the nodes from
+ * firstChild[node] (included) to firstChild[node + 1] (excluded). The root is
+ * the node 0.
+ * <p>
+ * The only modification is the removal of a word, which only clears the word
+ * id of its node: the node stays in the trie, and the word in the words.
+ * <p>
+ * Visibility: package
+ */
+final class CompiledTrie {
+
+    static final int NO_WORD = -1;
+
+    // label of the edge leading to each node
+    final char[] labels;
+    final int[] firstChild;
+    // id of the word ending at each node, or NO_WORD (also for a removed word)
+    final int[] wordIds;
+    // the words, sorted, indexed by their id
+    final String[] words;
+    final int maxDepth;
+
+    CompiledTrie(char[] labels, int[] firstChild, int[] wordIds, String[] words, int maxDepth) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.wordIds = wordIds;
+        this.words = words;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Builds the trie of a sorted array of distinct non empty words.
+     */
+    static CompiledTrie build(String[] sortedWords) {
+        long totalLength = 0;
+        for (String word : sortedWords)
+            totalLength += word.length();
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8L, totalLength + 1);
+
+        char[] labels = new char[capacity];
+        int[] firstChild = new int[capacity + 1];
+        int[] wordIds = new int[capacity];
+
+        // Until a node is processed, firstChild and wordIds hold the range of
+        // the words below it.
+        firstChild[0] = 0;
+        wordIds[0] = sortedWords.length;
+        int nodeCount = 1;
+        int depth = 0;
+        int levelEnd = 1;
+        for (int node = 0; node < nodeCount; node++) {
+            if (node == levelEnd) {
+                depth++;
+                levelEnd = nodeCount;
+            }
+            int from = firstChild[node];
+            int to = wordIds[node];
+
+            // the word equal to the prefix is the first one of the range
+            if (from < to && sortedWords[from].length() == depth)
+                wordIds[node] = from++;
+            else
+                wordIds[node] = NO_WORD;
+
+            firstChild[node] = nodeCount;
+            while (from < to) {
+                char c = sortedWords[from].charAt(depth);
+                int end = from + 1;
+                while (end < to && sortedWords[end].charAt(depth) == c)
+                    end++;
+                labels[nodeCount] = c;
+                firstChild[nodeCount] = from;
+                wordIds[nodeCount] = end;
+                nodeCount++;
+                from = end;
+            }
+        }
+        firstChild[nodeCount] = nodeCount;
+
+        return new CompiledTrie(Arrays.copyOf(labels, nodeCount), Arrays.copyOf(firstChild, nodeCount + 1), Arrays.copyOf(wordIds, nodeCount), sortedWords, depth);
+    }
+
+    int getNbOfNodes() {
+        return wordIds.length;
+    }
+
+    /**
+     * @return The child of the node with the given label, or -1.
+     */
+    int child(int node, char label) {
+        int low = firstChild[node];
+        int high = firstChild[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midLabel = labels[mid];
+            if (midLabel < label)
+                low = mid + 1;
+            else if (midLabel > label)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The node of the word, or -1.
+     */
+    int find(String word) {
+        int node = 0;
+        for (int i = 0; i < word.length() && node >= 0; i++)
+            node = child(node, word.charAt(i));
+        return node;
+    }
+
+    /**
+     * Removes a word, by clearing the word id of its node.
+     * 
+     * @return TRUE if the word was in the trie.
+     */
+    boolean remove(String word) {
+        int node = find(word);
+        if (node < 0 || wordIds[node] == NO_WORD)
+            return false;
+        wordIds[node] = NO_WORD;
+        return true;
+    }
+
+    /**
+     * @return The word ending at this node, or null.
+     */
+    String word(int node) {
+        int id = wordIds[node];
+        return id == NO_WORD ? null : words[id];
+    }
+
+}
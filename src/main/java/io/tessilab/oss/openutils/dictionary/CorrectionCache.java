@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>A bounded cache of closest word queries, to set on a dictionary with
+ * {@link Dictionary#setCache(CorrectionCache)}.</b>
+ * <p>
+ * The entries are spread over several stripes, each one being a
+ * least-recently-used map with its own lock, so concurrent queries rarely wait
+ * for each other. The entries can also expire after a given time. The
+ * dictionary invalidates the cache whenever its words change: a query that
+ * started before a change is not cached. A cache must not be shared by several
+ * dictionaries.
+ */
+public final class CorrectionCache {
+
+    private static final int MAX_STRIPES = 16;
+    // minimum number of entries per stripe before using several stripes
+    private static final int MIN_STRIPE_SIZE = 64;
+    private static final long NO_TTL = 0;
+
+    private final Stripe[] stripes;
+    private final long ttlNanos;
+    // incremented by each invalidation, the entries of older generations are
+    // ignored
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * A cache whose entries do not expire.
+     * 
+     * @param maximumSize
+     *            The maximum number of entries.
+     */
+    public CorrectionCache(int maximumSize) {
+        this(maximumSize, NO_TTL);
+    }
+
+    /**
+     * @param maximumSize
+     *            The maximum number of entries.
+     * @param ttl
+     *            The time an entry stays in the cache after it is added.
+     * @param unit
+     *            The unit of the time.
+     */
+    public CorrectionCache(int maximumSize, long ttl, TimeUnit unit) {
+        this(maximumSize, checkTtl(unit.toNanos(ttl)));
+    }
+
+    private CorrectionCache(int maximumSize, long ttlNanos) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("The size of the cache must be positive.");
+        int nbStripes = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maximumSize / MIN_STRIPE_SIZE)));
+        stripes = new Stripe[nbStripes];
+        for (int i = 0; i < nbStripes; i++)
+            stripes[i] = new Stripe(maximumSize / nbStripes);
+        this.ttlNanos = ttlNanos;
+    }
+
+    private static long checkTtl(long ttlNanos) {
+        if (ttlNanos <= 0)
+            throw new IllegalArgumentException("The time to live must be positive.");
+        return ttlNanos;
+    }
+
+    /**
+     * The search behind the cache. Visibility: package
+     */
+    @FunctionalInterface
+    interface Search {
+        String find(String word, double distance);
+    }
+
+    /**
+     * Returns the cached result of the query, or runs the search and caches
+     * its result. Visibility: package
+     */
+    String get(String word, double distance, Search search) {
+        long currentGeneration = generation.get();
+        Key key = new Key(word, distance);
+        Stripe stripe = stripes[key.hashCode() & (stripes.length - 1)];
+        synchronized (stripe) {
+            Entry entry = stripe.get(key);
+            if (entry != null) {
+                if (entry.generation == currentGeneration && !isExpired(entry)) {
+                    hits.increment();
+                    return entry.correction;
+                }
+                stripe.remove(key);
+            }
+        }
+
+        misses.increment();
+        String correction = search.find(word, distance);
+        Entry entry = new Entry(correction, currentGeneration, System.nanoTime());
+        synchronized (stripe) {
+            // not cached if the dictionary changed during the search
+            if (generation.get() == currentGeneration)
+                stripe.put(key, entry);
+        }
+        return correction;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return ttlNanos != NO_TTL && System.nanoTime() - entry.created >= ttlNanos;
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries (some of them may be expired).
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The number of queries answered by the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of queries that had to be searched.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The ratio of the queries answered by the cache (0 if there was
+     *         no query).
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private static final class Key {
+
+        private final String word;
+        private final double distance;
+
+        private Key(String word, double distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = 31 * word.hashCode() + Double.hashCode(distance);
+            return h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return word.equals(other.word) && Double.compare(distance, other.distance) == 0;
+        }
+    }
+
+    private static final class Entry {
+
+        // null if there was no word within the distance
+        private final String correction;
+        private final long generation;
+        private final long created;
+
+        private Entry(String correction, long generation, long created) {
+            this.correction = correction;
+            this.generation = generation;
+            this.created = created;
+        }
+    }
+
+    private static final class Stripe extends LinkedHashMap<Key, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+
+}
@@ -17,15 +17,25 @@ package io.tessilab.oss.openutils.dictionary;
 
 import io.tessilab.oss.openutils.FileUtils;
 import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+import io.tessilab.oss.openutils.distance.words.MyersLevenshteinDistance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
@@ -36,14 +46,18 @@ import java.util.stream.Stream;
  * 
  * @author galaad
  * @see LevenshteinDistance
- * @see WordCount
+ * @see WeightedDictionary
  */
 public class Dictionary {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Dictionary.class);
 
+    // number of words corrected by each task of correctAll
+    private static final int CORRECTION_CHUNK_SIZE = 64;
+
     protected BKTree<String> wordTree;
     protected Set<String> wordSet;
+    private volatile CorrectionCache cache;
 
     // -------Constructors
     /**
@@ -66,18 +80,44 @@ public class Dictionary {
     }
 
     protected void initWordTree() {
-        wordTree = new BKTree<>(new LevenshteinDistance(1e-3));
+        wordTree = new BKTree<>(new MyersLevenshteinDistance());
+    }
+
+    /**
+     * Builds the word tree of the given distinct words, with
+     * {@link BKTree#build(Stream, io.tessilab.oss.openutils.distance.words.Distance)}.
+     * The new tree is of the same kind, and has the same distance, as the
+     * current (empty) word tree, given by {@link #initWordTree()}.
+     * 
+     * @param words
+     *            The words, in the order they would be added.
+     * @return The new word tree.
+     */
+    protected BKTree<String> buildWordTree(Stream<String> words) {
+        return wordTree.rebuild(words.collect(Collectors.toList()));
     }
 
     protected void initFromFile(String path) {
         try {
             List<String> lines = FileUtils.getFileLines(path);
+            // an empty tree is built in parallel from all the words at once
+            boolean bulk = wordTree != null && isEmpty();
+            List<String> newWords = new ArrayList<>();
             for (String line : lines) {
                 String[] splits = line.split("\\s+");
                 for (String word : splits) {
-                    addNewWord(word);
+                    if (!bulk)
+                        addNewWord(word);
+                    else if (wordSet.add(word))
+                        newWords.add(word);
                 }
             }
+            if (bulk) {
+                BKTree<String> emptyTree = wordTree;
+                wordTree = buildWordTree(newWords.stream());
+                wordTree.setCompaction(emptyTree.getMaxDeadRatio(), emptyTree.getCompactionExecutor());
+                invalidateCache();
+            }
         } catch (IOException ioe) {
             LOGGER.error("Exception while loading the dictionary", ioe);
         }
@@ -113,12 +153,49 @@ public class Dictionary {
         if (!wordSet.contains(str)) {
             wordTree.add(str);
             wordSet.add(str);
+            invalidateCache();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Remove a word from the dictionary. The word is marked as removed in the
+     * word tree, which is compacted once it has too many removed words (see
+     * {@link #setCompaction(double, Executor)}).
+     * 
+     * @param str
+     *            The word to remove.
+     * @return TRUE if the word was in the dictionary.
+     */
+    public boolean removeWord(String str) {
+        if (wordSet.remove(str)) {
+            wordTree.remove(str);
+            invalidateCache();
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Sets when and where the word tree is compacted, see
+     * {@link BKTree#setCompaction(double, Executor)}. The dictionaries without
+     * word tree ignore it, unless they have their own compaction.
+     * 
+     * @param maxDeadRatio
+     *            The ratio of removed words above which the tree is compacted,
+     *            between 0 and 1 (1 to never compact it automatically).
+     * @param executor
+     *            The executor compacting the tree, or null to compact it in
+     *            the thread removing the word.
+     */
+    public void setCompaction(double maxDeadRatio, Executor executor) {
+        if (wordTree != null)
+            wordTree.setCompaction(maxDeadRatio, executor);
+    }
+
     /**
      * Check whether or not a word is in the dictionary (Complexity= O(1)).
      * 
@@ -139,10 +216,7 @@ public class Dictionary {
      * @return The closest word found (null if the dictionary is empty).
      */
     public String findClosestWord(String word) {
-        if (isEmpty()) {
-            return null;
-        }
-        return wordTree.findBestWordMatch(word);
+        return findClosestWord(word, Integer.MAX_VALUE);
     }
 
     /**
@@ -156,11 +230,160 @@ public class Dictionary {
      * 
      * @return The closest word found, within the given distance (null if the
      *         dictionary is empty).
+     * @see #setCache(CorrectionCache)
      */
     public String findClosestWord(String word, double distance) {
+        CorrectionCache current = cache;
+        if (current == null)
+            return searchClosestWord(word, distance);
+        return current.get(word, distance, this::searchClosestWord);
+    }
+
+    /**
+     * Search the closest word, without the cache. The subclasses override this
+     * method rather than {@link #findClosestWord(String, double)}.
+     * 
+     * @param word
+     *            A word
+     * @param distance
+     *            The maximum distance from the given word we accept results.
+     * @return The closest word found, within the given distance (null if there
+     *         is none).
+     */
+    protected String searchClosestWord(String word, double distance) {
         return wordTree.findBestWordMatchWithinDistance(word, distance);
     }
 
+    /**
+     * Set the cache of the closest word queries.
+     * 
+     * @param cache
+     *            The cache, or null to disable caching. It is emptied.
+     */
+    public void setCache(CorrectionCache cache) {
+        if (cache != null)
+            cache.invalidateAll();
+        this.cache = cache;
+    }
+
+    /**
+     * @return The cache of the closest word queries, or null.
+     */
+    public CorrectionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Empties the cache, to call whenever the words of the dictionary change.
+     */
+    protected void invalidateCache() {
+        CorrectionCache current = cache;
+        if (current != null)
+            current.invalidateAll();
+    }
+
+    /**
+     * Find the k closest words from a given word in the dictionary.
+     * 
+     * @param word
+     *            A word.
+     * @param k
+     *            The number of words wanted.
+     * @return At most k words with their distance to the given word, sorted by
+     *         increasing distance, then alphabetically.
+     */
+    public List<Match<String>> findClosestWords(String word, int k) {
+        List<Match<String>> matches = wordTree.findBestMatches(word, k);
+        matches.sort(Match.byDistanceThenTerm());
+        return matches;
+    }
+
+    /**
+     * Find all the words of the dictionary within a given distance from a
+     * word.
+     * 
+     * @param word
+     *            A word.
+     * @param distance
+     *            The maximum distance from the given word we accept results.
+     * @return The words with their distance to the given word, sorted by
+     *         increasing distance, then alphabetically.
+     */
+    public List<Match<String>> findAllWithin(String word, double distance) {
+        List<Match<String>> matches = wordTree.findAllWithin(word, distance);
+        matches.sort(Match.byDistanceThenTerm());
+        return matches;
+    }
+
+    /**
+     * Find the closest word of each of the given words, on the common fork/join
+     * pool.
+     * 
+     * @param words
+     *            The words to correct (not null). The duplicates are corrected
+     *            once.
+     * @return The closest word of each given word.
+     * @see #correctAll(Collection, double, Executor)
+     */
+    public Map<String, String> correctAll(Collection<String> words) {
+        return correctAll(words, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the closest word of each of the given words, within a given
+     * distance, on the common fork/join pool.
+     * 
+     * @param words
+     *            The words to correct (not null). The duplicates are corrected
+     *            once.
+     * @param distance
+     *            The maximum distance from the given words we accept results.
+     * @return The closest word of each given word (null if there is none
+     *         within the distance).
+     * @see #correctAll(Collection, double, Executor)
+     */
+    public Map<String, String> correctAll(Collection<String> words, double distance) {
+        return correctAll(words, distance, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Find the closest word of each of the given words, within a given
+     * distance. The words are deduplicated and sorted, then corrected by
+     * chunks of consecutive words, each chunk being a task of the executor.
+     * The dictionary must not be modified meanwhile.
+     * 
+     * @param words
+     *            The words to correct (not null). The duplicates are corrected
+     *            once.
+     * @param distance
+     *            The maximum distance from the given words we accept results.
+     * @param executor
+     *            The executor running the corrections.
+     * @return The closest word of each given word (null if there is none
+     *         within the distance).
+     */
+    public Map<String, String> correctAll(Collection<String> words, double distance, Executor executor) {
+        String[] distinct = new TreeSet<>(words).toArray(new String[0]);
+        List<CompletableFuture<String[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.length; from += CORRECTION_CHUNK_SIZE) {
+            int start = from;
+            int end = Math.min(distinct.length, from + CORRECTION_CHUNK_SIZE);
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                String[] corrections = new String[end - start];
+                for (int i = start; i < end; i++)
+                    corrections[i - start] = findClosestWord(distinct[i], distance);
+                return corrections;
+            }, executor));
+        }
+
+        Map<String, String> result = new HashMap<>(2 * distinct.length);
+        int index = 0;
+        for (CompletableFuture<String[]> chunk : chunks)
+            for (String correction : chunk.join())
+                result.put(distinct[index++], correction);
+        return result;
+    }
+
     @Override
     public String toString() {
         StringBuilder stringBuilder = new StringBuilder();
@@ -173,8 +396,9 @@ public class Dictionary {
     }
 
     /**
-     * Write the words and their count in a file (the name of the file should
-     * end with .dico for more convenience).
+     * Write the words in a file, separated by spaces (the name of the file
+     * should end with .dico for more convenience). The counts of the words are
+     * not kept, see {@link WeightedDictionary} for that.
      * 
      * @param path
      *            The ".dico" file path.
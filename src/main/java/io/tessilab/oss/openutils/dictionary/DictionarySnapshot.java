@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * <b>Writes and reads binary snapshots of built dictionaries.</b>
+ * <p>
+ * A snapshot holds the words and the built index (the nodes of the BK-tree, or
+ * the arrays of the compiled trie), so reading it needs neither parsing nor
+ * distance computations: the file is mapped with {@link FileChannel#map} and
+ * the arrays are copied in bulk. The supported dictionaries are
+ * {@link Dictionary}, {@link IntBKTreeDictionary} and
+ * {@link LevenshteinDictionary} (subclasses are not supported, since their
+ * state may not be in the snapshot).
+ * <p>
+ * Format (big-endian): the magic number, the version, the kind of index, the
+ * number of words, the offsets of the words (one more than the number of
+ * words) and their chars, then the index:
+ * <ul>
+ * <li>BK-trees: one node per word, in preorder, with the index of its parent
+ * (-1 for the root) and the distance to its parent (a double, or an int for
+ * {@link IntBKTree}).</li>
+ * <li>Tries: the number of nodes, the maximum depth, then the labels, the
+ * first children and the word ids of the nodes (see {@link CompiledTrie}).
+ * The words are sorted.</li>
+ * </ul>
+ * 
+ * @see Dictionary#writeInFile(String)
+ */
+public final class DictionarySnapshot {
+
+    static final int MAGIC = 0x4F554443;
+    static final int VERSION = 1;
+
+    static final int BK_TREE = 1;
+    static final int INT_BK_TREE = 2;
+    static final int TRIE = 3;
+
+    private DictionarySnapshot() {
+    }
+
+    /**
+     * Write a snapshot of a dictionary in a file. The dictionary is left as it
+     * is: when its word tree has removed words, or when words were added since
+     * its trie was compiled, a compacted copy is written.
+     * 
+     * @param dictionary
+     *            A {@link Dictionary}, an {@link IntBKTreeDictionary} or a
+     *            {@link LevenshteinDictionary}.
+     * @param path
+     *            The path of the snapshot file.
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    public static void write(Dictionary dictionary, String path) throws IOException {
+        int kind = kindOf(dictionary);
+        try (OutputStream stream = Files.newOutputStream(Paths.get(path));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(kind);
+            if (kind == TRIE)
+                writeTrie(((LevenshteinDictionary) dictionary).trieOfAllWords(), out);
+            else
+                writeBKTree(dictionary.wordTree, kind, out);
+        }
+    }
+
+    /**
+     * Read a dictionary from a snapshot file written by
+     * {@link #write(Dictionary, String)}.
+     * 
+     * @param path
+     *            The path of the snapshot file.
+     * @return A dictionary of the same class as the one written.
+     * @throws IOException
+     *             If the file cannot be read, or is not a valid snapshot.
+     */
+    public static Dictionary read(String path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("The snapshot is too large to be mapped: " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a dictionary snapshot: " + path);
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            int kind = buffer.getInt();
+            String[] words = readWords(buffer);
+            switch (kind) {
+            case TRIE:
+                return readTrie(words, buffer);
+            case BK_TREE:
+            case INT_BK_TREE:
+                return readBKTree(words, kind, buffer);
+            default:
+                throw new IOException("Unknown snapshot kind " + kind + ": " + path);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted dictionary snapshot: " + path, e);
+        }
+    }
+
+    private static int kindOf(Dictionary dictionary) {
+        Class<?> clazz = dictionary.getClass();
+        if (clazz == Dictionary.class)
+            return BK_TREE;
+        else if (clazz == IntBKTreeDictionary.class)
+            return INT_BK_TREE;
+        else if (clazz == LevenshteinDictionary.class)
+            return TRIE;
+        else
+            throw new IllegalArgumentException("Snapshots are not supported for " + clazz.getName());
+    }
+
+    // -------Writing
+
+    private static void writeWords(String[] words, DataOutputStream out) throws IOException {
+        out.writeInt(words.length);
+        int offset = 0;
+        out.writeInt(offset);
+        for (String word : words) {
+            offset += word.length();
+            out.writeInt(offset);
+        }
+        for (String word : words)
+            out.writeChars(word);
+    }
+
+    private static void writeTrie(CompiledTrie trie, DataOutputStream out) throws IOException {
+        writeWords(trie.words, out);
+        int nodes = trie.getNbOfNodes();
+        out.writeInt(nodes);
+        out.writeInt(trie.maxDepth);
+        for (int i = 0; i < nodes; i++)
+            out.writeChar(trie.labels[i]);
+        for (int i = 0; i <= nodes; i++)
+            out.writeInt(trie.firstChild[i]);
+        for (int i = 0; i < nodes; i++)
+            out.writeInt(trie.wordIds[i]);
+    }
+
+    private static void writeBKTree(BKTree<String> tree, int kind, DataOutputStream out) throws IOException {
+        // the removed words are not written, the tree itself is not compacted
+        // as it may be queried meanwhile
+        BKTree<String> written = tree.getDeadCount() > 0 ? tree.rebuild(tree.liveTerms()) : tree;
+        List<String> terms = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        List<Double> keys = new ArrayList<>();
+        written.visitNodes((term, parent, key) -> {
+            terms.add(term);
+            parents.add(parent);
+            keys.add(key);
+        });
+
+        writeWords(terms.toArray(new String[terms.size()]), out);
+        for (int parent : parents)
+            out.writeInt(parent);
+        for (double key : keys) {
+            if (kind == INT_BK_TREE)
+                out.writeInt((int) key);
+            else
+                out.writeDouble(key);
+        }
+    }
+
+    // -------Reading
+
+    private static String[] readWords(MappedByteBuffer buffer) {
+        int count = buffer.getInt();
+        int[] offsets = readInts(buffer, count + 1);
+        char[] chars = new char[offsets[count]];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + 2 * chars.length);
+
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++)
+            words[i] = new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+        return words;
+    }
+
+    private static int[] readInts(MappedByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    private static Dictionary readTrie(String[] words, MappedByteBuffer buffer) {
+        int nodes = buffer.getInt();
+        int maxDepth = buffer.getInt();
+        char[] labels = new char[nodes];
+        buffer.asCharBuffer().get(labels);
+        buffer.position(buffer.position() + 2 * nodes);
+        int[] firstChild = readInts(buffer, nodes + 1);
+        int[] wordIds = readInts(buffer, nodes);
+
+        LevenshteinDictionary dictionary = new LevenshteinDictionary();
+        dictionary.restoreTrie(new CompiledTrie(labels, firstChild, wordIds, words, maxDepth));
+        return dictionary;
+    }
+
+    private static Dictionary readBKTree(String[] words, int kind, MappedByteBuffer buffer) {
+        int[] parents = readInts(buffer, words.length);
+        double[] keys = new double[words.length];
+        if (kind == INT_BK_TREE) {
+            int[] intKeys = readInts(buffer, words.length);
+            for (int i = 0; i < intKeys.length; i++)
+                keys[i] = intKeys[i];
+        } else {
+            buffer.asDoubleBuffer().get(keys);
+            buffer.position(buffer.position() + 8 * keys.length);
+        }
+
+        Dictionary dictionary = kind == INT_BK_TREE ? new IntBKTreeDictionary() : new Dictionary();
+        dictionary.wordTree.restoreNodes(words, parents, keys);
+        dictionary.wordSet = new HashSet<>(Arrays.asList(words));
+        return dictionary;
+    }
+
+}
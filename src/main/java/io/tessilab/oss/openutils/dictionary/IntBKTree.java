@@ -17,9 +17,18 @@ package io.tessilab.oss.openutils.dictionary;
 
 
 import io.tessilab.oss.openutils.distance.words.IntDistance;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class in an implementation of a Burkhard-Keller tree in Java. The
@@ -35,13 +44,16 @@ import java.util.Map.Entry;
  * 
  * Searching the tree yields O(logn), which is a huge upgrade over brute force
  * 
+ * The queries keep their state local, so several threads can query the same
+ * tree at once (provided the distance is thread-safe), as long as no term is
+ * added or removed meanwhile. The removals work as in {@link BKTree}.
+ * 
  * @author Josh Clemm
  *
  */
 public class IntBKTree<E> extends BKTree<E> {
 
-    private Node root;
-    private HashMap<E, Integer> matches;
+    private volatile Node root;
     private IntDistance<E> distance;
 
     public IntBKTree(IntDistance<E> distance) {
@@ -49,12 +61,72 @@ public class IntBKTree<E> extends BKTree<E> {
         this.distance = distance;
     }
 
-    public void add(E term) {
-        if (root != null) {
-            root.add(term);
-        } else {
+    @Override
+    public IntDistance<E> getDistance() {
+        return distance;
+    }
+
+    @Override
+    boolean insert(E term) {
+        if (root == null) {
             root = new Node(term);
+            return false;
         }
+        return root.add(term);
+    }
+
+    @Override
+    boolean delete(E term) {
+        Node node = root;
+        while (node != null) {
+            int score = distance.getDistanceInt(term, node.term);
+            if (score == 0 && !node.deleted && node.term.equals(term)) {
+                node.deleted = true;
+                return true;
+            }
+            node = node.child(score);
+        }
+        return false;
+    }
+
+    @Override
+    List<E> liveTerms() {
+        List<E> terms = new ArrayList<>(size());
+        if (root != null)
+            root.collectLiveTerms(terms);
+        return terms;
+    }
+
+    @Override
+    BKTree<E> rebuild(List<E> terms) {
+        return build(terms.stream(), distance);
+    }
+
+    @Override
+    void adopt(BKTree<E> rebuilt) {
+        root = ((IntBKTree<E>) rebuilt).root;
+    }
+
+    /**
+     * Builds a tree from a stream of terms, in parallel on the common fork/join
+     * pool. The tree is the same as the one built by adding the terms one by
+     * one, in the order of the stream (see
+     * {@link BKTree#build(Stream, io.tessilab.oss.openutils.distance.words.Distance)}).
+     * The distance must be thread-safe.
+     * 
+     * @param terms
+     *            The terms to add.
+     * @param distance
+     *            The distance of the tree.
+     * @return The tree.
+     */
+    public static <E> IntBKTree<E> build(Stream<E> terms, IntDistance<E> distance) {
+        IntBKTree<E> tree = new IntBKTree<>(distance);
+        List<E> list = terms.collect(Collectors.toList());
+        if (!list.isEmpty())
+            tree.root = ForkJoinPool.commonPool().invoke(tree.new BuildTask(list));
+        tree.resetCounts(list.size());
+        return tree;
     }
 
     @Override
@@ -72,95 +144,173 @@ public class IntBKTree<E> extends BKTree<E> {
      * @return
      */
     public Map<E, Integer> query(E searchObject, int threshold) {
-        matches = new HashMap<>();
-        root.query(searchObject, threshold, matches);
+        Map<E, Integer> matches = new HashMap<>();
+        Node current = root;
+        if (current != null)
+            current.query(searchObject, threshold, matches);
         return matches;
     }
 
-    /**
-     * Attempts to find the closest match to the search term.
-     * 
-     * @param term
-     * @return the edit distance of the best match
-     */
     @Override
-    public double find(E term) {
-        return root.findBestMatch(term, Integer.MAX_VALUE);
+    public List<Match<E>> findAllWithin(E term, double threshold) {
+        List<Match<E>> result = new ArrayList<>();
+        query(term, (int) threshold).forEach((t, d) -> result.add(new Match<>(t, d)));
+        result.sort(Comparator.comparingDouble(Match::getDistance));
+        return result;
     }
 
-    /**
-     * Attempts to find the closest match to the search term.
-     * 
-     * @param term
-     * @return a match that is within the best edit distance of the search term.
-     */
     @Override
-    public E findBestWordMatchWithinDistance(E term, double threshold) {
-        bestTerm = null;
-        root.findBestMatch(term, (int) threshold);
-        return root.getBestTerm();
+    public List<Match<E>> findBestMatches(E term, int k) {
+        PriorityQueue<Match<E>> best = newWorstFirstQueue(k);
+        Node current = root;
+        if (current != null)
+            current.findBestMatches(term, k, best);
+        return sortedMatches(best);
     }
 
-    /**
-     * Attempts to find the closest match to the search term.
-     * 
-     * @param term
-     * @return a match that is within the best edit distance of the search term.
-     */
     @Override
-    public E findBestWordMatch(E term) {
-        root.findBestMatch(term, Integer.MAX_VALUE);
-        return root.getBestTerm();
+    public Match<E> findBestMatch(E term, double threshold) {
+        Node current = root;
+        if (current == null)
+            return null;
+        BestMatch<E> best = new BestMatch<>();
+        current.findBestMatch(term, (int) Math.min(threshold, Integer.MAX_VALUE), best);
+        return best.toMatch();
+    }
+
+    @Override
+    void visitNodes(NodeVisitor<E> visitor) {
+        checkNoDeadTerms();
+        if (root != null)
+            root.visit(visitor, -1, 0, new int[] { 0 });
+    }
+
+    @Override
+    void restoreNodes(E[] terms, int[] parents, double[] keys) {
+        if (root != null)
+            throw new IllegalStateException("The tree is not empty.");
+        List<Node> nodes = new ArrayList<>(terms.length);
+        for (int i = 0; i < terms.length; i++) {
+            Node node = new Node(terms[i]);
+            if (parents[i] < 0)
+                root = node;
+            else
+                nodes.get(parents[i]).setChild((int) keys[i], node);
+            nodes.add(node);
+        }
+        resetCounts(terms.length);
     }
 
     /**
-     * Attempts to find the closest match to the search term.
-     * 
-     * @param term
-     * @return a match that is within the best edit distance of the search term.
+     * Builds the subtree of a list of terms, whose first term is the root.
      */
-    @Override
-    public Map<E, Double> findBestWordMatchWithDistance(E term) {
-        double d = root.findBestMatch(term, Integer.MAX_VALUE);
-        Map<E, Double> returnMap = new HashMap<>();
-        returnMap.put(root.getBestTerm(), d);
-        return returnMap;
+    private class BuildTask extends RecursiveTask<Node> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<E> terms;
+
+        private BuildTask(List<E> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        protected Node compute() {
+            Node node = new Node(terms.get(0));
+            if (terms.size() <= SEQUENTIAL_BUILD_THRESHOLD) {
+                for (int i = 1; i < terms.size(); i++)
+                    node.add(terms.get(i));
+                return node;
+            }
+
+            int[] scores = new int[terms.size()];
+            Arrays.parallelSetAll(scores, i -> i == 0 ? 0 : distance.getDistanceInt(terms.get(i), node.term));
+            // the parts keep the order of the terms
+            TreeMap<Integer, List<E>> parts = new TreeMap<>();
+            for (int i = 1; i < scores.length; i++)
+                parts.computeIfAbsent(scores[i], score -> new ArrayList<>()).add(terms.get(i));
+
+            List<BuildTask> tasks = new ArrayList<>(parts.size());
+            for (List<E> part : parts.values())
+                tasks.add(new BuildTask(part));
+            invokeAll(tasks);
+            int i = 0;
+            for (Integer score : parts.keySet())
+                node.setChild(score, tasks.get(i++).join());
+            return node;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Node[] newNodes(int length) {
+        return (Node[]) new IntBKTree.Node[length];
     }
 
     private class Node {
 
         E term;
-        Map<Integer, Node> children;
+        // the children indexed by their distance to the term, null for a leaf
+        Node[] children;
+        // TRUE if the term was removed
+        boolean deleted;
 
         public Node(E term) {
             this.term = term;
-            children = new HashMap<>();
         }
 
-        public void add(E term) {
+        private Node child(int score) {
+            return children != null && score >= 0 && score < children.length ? children[score] : null;
+        }
+
+        private void setChild(int score, Node child) {
+            if (children == null)
+                children = newNodes(score + 1);
+            else if (score >= children.length)
+                children = Arrays.copyOf(children, score + 1);
+            children[score] = child;
+        }
+
+        public boolean add(E term) {
             int score = distance.getDistanceInt(term, this.term);
-            Node child = children.get(score);
+            if (deleted && score == 0 && this.term.equals(term)) {
+                deleted = false;
+                return true;
+            }
+            Node child = child(score);
             if (child != null) {
-                child.add(term);
+                return child.add(term);
             } else {
-                children.put(score, new Node(term));
+                setChild(score, new Node(term));
+                return false;
             }
         }
 
-        public int findBestMatch(E term, int bestDistance) {
+        private void collectLiveTerms(List<E> terms) {
+            if (!deleted)
+                terms.add(term);
+            if (children != null)
+                for (Node child : children)
+                    if (child != null)
+                        child.collectLiveTerms(terms);
+        }
+
+        public int findBestMatch(E term, int bestDistance, BestMatch<E> best) {
             int distanceAtNode = distance.getDistanceInt(term, this.term);
 
             int bestDistance2 = bestDistance;
-            if (distanceAtNode <= bestDistance2) {
+            if (!deleted && distanceAtNode <= bestDistance2) {
                 bestDistance2 = distanceAtNode;
-                bestTerm = this.term;
+                best.term = this.term;
+                best.distance = distanceAtNode;
             }
+            if (children == null)
+                return bestDistance2;
 
             int possibleBest;
 
-            Node n = children.get(distanceAtNode);
+            Node n = child(distanceAtNode);
             if (n != null) {
-                possibleBest = n.findBestMatch(term, bestDistance2);
+                possibleBest = n.findBestMatch(term, bestDistance2, best);
                 if (possibleBest < bestDistance2) {
                     bestDistance2 = possibleBest;
 
@@ -172,11 +322,12 @@ public class IntBKTree<E> extends BKTree<E> {
             }
 
             for (int i = 1; i <= bestDistance2; i++) {
-                if (i > bestDistance2)
+                // no more children on both sides
+                if (distanceAtNode + i >= children.length && distanceAtNode - i < 0)
                     break;
-                n = children.get(distanceAtNode + i);
+                n = child(distanceAtNode + i);
                 if (n != null) {
-                    possibleBest = n.findBestMatch(term, bestDistance2);
+                    possibleBest = n.findBestMatch(term, bestDistance2, best);
                     if (possibleBest < bestDistance2) {
                         bestDistance2 = possibleBest;
 
@@ -188,9 +339,9 @@ public class IntBKTree<E> extends BKTree<E> {
                 }
                 if (i > bestDistance2)
                     break;
-                n = children.get(distanceAtNode - i);
+                n = child(distanceAtNode - i);
                 if (n != null) {
-                    possibleBest = n.findBestMatch(term, bestDistance2);
+                    possibleBest = n.findBestMatch(term, bestDistance2, best);
                     if (possibleBest < bestDistance2) {
                         bestDistance2 = possibleBest;
 
@@ -204,22 +355,44 @@ public class IntBKTree<E> extends BKTree<E> {
             return bestDistance2;
         }
 
-        public E getBestTerm() {
-            return bestTerm;
+        private void visit(NodeVisitor<E> visitor, int parent, int key, int[] counter) {
+            int index = counter[0]++;
+            visitor.visit(term, parent, key);
+            if (children == null)
+                return;
+            for (int dist = 0; dist < children.length; dist++)
+                if (children[dist] != null)
+                    children[dist].visit(visitor, index, dist, counter);
+        }
+
+        public void findBestMatches(E term, int k, PriorityQueue<Match<E>> best) {
+            int distanceAtNode = distance.getDistanceInt(term, this.term);
+            if (!deleted)
+                offerMatch(best, k, this.term, distanceAtNode);
+            if (children == null)
+                return;
+
+            for (int dist = 0; dist < children.length; dist++) {
+                double threshold = best.size() < k ? Double.POSITIVE_INFINITY : best.peek().getDistance();
+                if (children[dist] != null && dist <= distanceAtNode + threshold && dist >= distanceAtNode - threshold)
+                    children[dist].findBestMatches(term, k, best);
+            }
         }
 
         public void query(E term, int threshold, Map<E, Integer> collected) {
             int distanceAtNode = distance.getDistanceInt(term, this.term);
 
-            if (distanceAtNode <= threshold) {
+            if (!deleted && distanceAtNode <= threshold) {
                 collected.put(this.term, distanceAtNode);
             }
+            if (children == null)
+                return;
 
-            for (Entry<Integer, IntBKTree<E>.Node> entry : children.entrySet()) {
-                int dist = entry.getKey();
-                if (dist <= distanceAtNode + threshold && dist >= distanceAtNode - threshold)
-                    entry.getValue().query(term, threshold, collected);
-            }
+            int from = Math.max(0, distanceAtNode - threshold);
+            int to = (int) Math.min(children.length - 1L, (long) distanceAtNode + threshold);
+            for (int dist = from; dist <= to; dist++)
+                if (children[dist] != null)
+                    children[dist].query(term, threshold, collected);
         }
     }
 
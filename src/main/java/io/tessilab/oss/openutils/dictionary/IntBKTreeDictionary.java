@@ -15,7 +15,7 @@
  */
 package io.tessilab.oss.openutils.dictionary;
 
-import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+import io.tessilab.oss.openutils.distance.words.MyersLevenshteinDistance;
 
 public class IntBKTreeDictionary extends Dictionary {
 
@@ -29,7 +29,7 @@ public class IntBKTreeDictionary extends Dictionary {
 
     @Override
     protected void initWordTree() {
-        wordTree = new IntBKTree<String>(new LevenshteinDistance(1e-3));
+        wordTree = new IntBKTree<String>(new MyersLevenshteinDistance());
     }
 
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <b>A deterministic automaton accepting the strings within a maximum
+ * Levenshtein distance of a word.</b>
+ * <p>
+ * Each state is a row of the Levenshtein matrix of the word, whose values are
+ * capped at maxDistance + 1: reading a char computes the next row. The
+ * states and their transitions are built the first time they are reached, so
+ * a single query only computes the rows it visits, like the dynamic
+ * programming, and walking a transition again costs one array lookup. The
+ * chars of the word are the only ones that need their own transitions, all
+ * the other chars behave the same. The rows whose values are all above
+ * maxDistance lead to the dead state {@link #DEAD_STATE}.
+ * <p>
+ * The number of states grows quickly with the distance, so the automaton is
+ * meant for small distances (up to 2 or 3). It can be shared between threads:
+ * the missing transitions are built under its lock.
+ * 
+ * @see LevenshteinDictionary#findAll(LevenshteinAutomaton)
+ */
+public final class LevenshteinAutomaton {
+
+    public static final int DEAD_STATE = -1;
+
+    // a transition which is not built yet
+    private static final int UNKNOWN_STATE = -2;
+
+    private final String word;
+    private final char[] chars;
+    private final int maxDistance;
+    // the distinct chars of the word, sorted
+    private final char[] alphabet;
+    // nbSymbols transitions per state, the last symbol being any other char
+    private final int nbSymbols;
+    // the states built so far, by id; written under the lock, then published
+    // again so that the readers of a new id see its state
+    private volatile State[] states;
+    private volatile int nbOfStates;
+    // the ids of the rows, by their values as chars; guarded by the lock
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * @param word
+     *            The word.
+     * @param maxDistance
+     *            The greatest distance accepted.
+     */
+    public LevenshteinAutomaton(String word, int maxDistance) {
+        if (maxDistance < 0)
+            throw new IllegalArgumentException("The maximum distance must not be negative.");
+        this.word = word;
+        this.maxDistance = maxDistance;
+
+        chars = word.toCharArray();
+        char[] sorted = chars.clone();
+        Arrays.sort(sorted);
+        int nbDistinct = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[nbDistinct++] = sorted[i];
+        alphabet = Arrays.copyOf(sorted, nbDistinct);
+        nbSymbols = nbDistinct + 1;
+
+        states = new State[16];
+        int[] start = new int[chars.length + 1];
+        for (int i = 0; i < start.length; i++)
+            start[i] = Math.min(i, maxDistance + 1);
+        stateOf(start);
+    }
+
+    /**
+     * @return The id of the state of a row, added if it is new. Called under
+     *         the lock.
+     */
+    private int stateOf(int[] row) {
+        String key = key(row);
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = nbOfStates;
+            State[] array = states;
+            if (id == array.length)
+                array = Arrays.copyOf(array, 2 * array.length);
+            array[id] = new State(row, nbSymbols);
+            states = array;
+            nbOfStates = id + 1;
+            ids.put(key, id);
+        }
+        return id;
+    }
+
+    private synchronized int buildTransition(State state, int symbol) {
+        int target = state.transitions.get(symbol);
+        if (target != UNKNOWN_STATE)
+            return target;
+        int[] next = nextRow(chars, state.row, symbol < alphabet.length ? alphabet[symbol] : -1);
+        target = next == null ? DEAD_STATE : stateOf(next);
+        state.transitions.set(symbol, target);
+        return target;
+    }
+
+    /**
+     * @param c
+     *            The char read, or -1 for a char that is not in the word.
+     * @return The next row, capped, or null if all its values are above the
+     *         maximum distance.
+     */
+    private int[] nextRow(char[] chars, int[] row, int c) {
+        int cap = maxDistance + 1;
+        int[] next = new int[row.length];
+        next[0] = Math.min(row[0] + 1, cap);
+        int min = next[0];
+        for (int i = 1; i < row.length; i++) {
+            int value = row[i - 1] + (chars[i - 1] == c ? 0 : 1);
+            value = Math.min(value, row[i] + 1);
+            value = Math.min(value, next[i - 1] + 1);
+            next[i] = Math.min(value, cap);
+            min = Math.min(min, next[i]);
+        }
+        return min > maxDistance ? null : next;
+    }
+
+    private static String key(int[] row) {
+        char[] key = new char[row.length];
+        for (int i = 0; i < row.length; i++)
+            key[i] = (char) row[i];
+        return new String(key);
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @return The number of states built so far (the dead state excluded).
+     */
+    public int getNbOfStates() {
+        return nbOfStates;
+    }
+
+    /**
+     * @return The state before reading any char.
+     */
+    public int getStartState() {
+        return 0;
+    }
+
+    /**
+     * @param state
+     *            A state, not dead.
+     * @param c
+     *            The char read.
+     * @return The next state, possibly {@link #DEAD_STATE}.
+     */
+    public int step(int state, char c) {
+        int symbol = Arrays.binarySearch(alphabet, c);
+        if (symbol < 0)
+            symbol = nbSymbols - 1;
+        State current = states[state];
+        int target = current.transitions.get(symbol);
+        return target == UNKNOWN_STATE ? buildTransition(current, symbol) : target;
+    }
+
+    /**
+     * @param state
+     *            A state, not dead.
+     * @return TRUE if the chars read so far are within the maximum distance of
+     *         the word.
+     */
+    public boolean isAccepting(int state) {
+        return states[state].distance <= maxDistance;
+    }
+
+    /**
+     * @param state
+     *            A state, not dead.
+     * @return The distance between the chars read so far and the word, or
+     *         maxDistance + 1 if it is greater than maxDistance.
+     */
+    public int getDistance(int state) {
+        return states[state].distance;
+    }
+
+    /**
+     * @param str
+     *            A string.
+     * @return The distance between the string and the word, or maxDistance + 1
+     *         if it is greater than maxDistance.
+     */
+    public int distance(CharSequence str) {
+        int state = getStartState();
+        for (int i = 0; i < str.length(); i++) {
+            state = step(state, str.charAt(i));
+            if (state == DEAD_STATE)
+                return maxDistance + 1;
+        }
+        return states[state].distance;
+    }
+
+    /**
+     * Collects the words of a subtree of a trie accepted by the automaton. The
+     * subtrees are skipped as soon as the automaton dies, without computing
+     * any distance. Visibility: package
+     * 
+     * @param state
+     *            The state reached at the node.
+     */
+    void collectMatches(CompiledTrie trie, int node, int state, List<Match<String>> matches) {
+        int lastChild = trie.firstChild[node + 1];
+        for (int child = trie.firstChild[node]; child < lastChild; child++) {
+            int next = step(state, trie.labels[child]);
+            if (next == DEAD_STATE)
+                continue;
+            int id = trie.wordIds[child];
+            int distance = states[next].distance;
+            if (id != CompiledTrie.NO_WORD && distance <= maxDistance)
+                matches.add(new Match<>(trie.words[id], distance));
+            collectMatches(trie, child, next, matches);
+        }
+    }
+
+    /**
+     * A row of the matrix, with its transitions built so far.
+     */
+    private static final class State {
+
+        private final int[] row;
+        // the last value of the row, maxDistance + 1 if it does not accept
+        private final int distance;
+        // by symbol, UNKNOWN_STATE until built
+        private final AtomicIntegerArray transitions;
+
+        private State(int[] row, int nbSymbols) {
+            this.row = row;
+            distance = row[row.length - 1];
+            transitions = new AtomicIntegerArray(nbSymbols);
+            for (int symbol = 0; symbol < nbSymbols; symbol++)
+                transitions.set(symbol, UNKNOWN_STATE);
+        }
+
+    }
+
+}
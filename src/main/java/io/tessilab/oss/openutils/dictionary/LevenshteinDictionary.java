@@ -15,19 +15,68 @@
  */
 package io.tessilab.oss.openutils.dictionary;
 
-import java.util.HashMap;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+import io.tessilab.oss.openutils.distance.words.WeightedLevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A dictionary stored in a trie. The closest words are found by computing the
+ * rows of the Levenshtein matrix while walking down the trie, and pruning the
+ * branches whose row minimum is already above the best distance found.
+ * <p>
+ * The trie is compiled from the words by {@link #finalizeTree()}, which is
+ * called by the first query, into primitive arrays (see {@link CompiledTrie}).
+ * Each query then keeps its own search state, so several threads can query the
+ * same dictionary at once. The words added after the compilation are kept in
+ * a small list searched alongside the compiled trie, which is compiled again
+ * at the next query once the list holds more than the square root of its
+ * words (and at least {@value #MIN_ADDED_WORDS}). Removing a word only clears
+ * its node in the compiled trie, which is compiled again (in the background by
+ * default) once the ratio of removed words reaches the one set by
+ * {@link #setCompaction(double, Executor)}. Modifications must not happen
+ * concurrently with queries.
+ */
 public class LevenshteinDictionary extends Dictionary {
 
-    private Node root;
-    private String bestTerm;
-    private int maxWordLength;
-    protected int[][] mat = null;
-    private int[][] cache = null;
-    private Character[] wordChar;
-    private int wordLength;
+    private static final ThreadLocal<SearchContext> SEARCH_CONTEXTS = ThreadLocal.withInitial(SearchContext::new);
+    private static final Comparator<Match<String>> DEFAULT_ORDER = Match.byDistanceThenTerm();
+
+    /**
+     * The greatest distance for which {@link #findAllWithin(String, double)}
+     * uses a Levenshtein automaton.
+     */
+    public static final int AUTOMATON_MAX_DISTANCE = 2;
+
+    /**
+     * The number of added words kept out of the compiled trie before it is
+     * compiled again, for the small dictionaries.
+     */
+    public static final int MIN_ADDED_WORDS = 64;
+
+    private static final LevenshteinDistance ADDED_WORDS_DISTANCE = new LevenshteinDistance(0);
+
+    // the compiled trie and the words added since, null when the trie has to
+    // be compiled again
+    private volatile TrieState state;
+    // the number of words removed from the compiled trie
+    private int deadWords;
+    // initialized by initWordTree, as the base constructor calls it
+    private double maxDeadRatio;
+    private Executor compactionExecutor;
+    // the words removed while the trie is compiled again, null otherwise
+    private List<String> pendingRemovals;
 
     public LevenshteinDictionary() {
         super();
@@ -39,129 +88,494 @@ public class LevenshteinDictionary extends Dictionary {
 
     @Override
     protected void initWordTree() {
-        // do nothing
+        maxDeadRatio = BKTree.DEFAULT_MAX_DEAD_RATIO;
+        compactionExecutor = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Sets when and where the compiled trie is compiled again after removals.
+     * 
+     * @param maxDeadRatio
+     *            The ratio of removed words (among the words of the compiled
+     *            trie) above which it is compiled again, between 0 and 1 (1 to
+     *            never compile it again automatically).
+     * @param executor
+     *            The executor compiling the trie, or null to compile it in the
+     *            thread removing the word.
+     */
+    @Override
+    public synchronized void setCompaction(double maxDeadRatio, Executor executor) {
+        if (!(maxDeadRatio >= 0 && maxDeadRatio <= 1))
+            throw new IllegalArgumentException("The ratio of removed words must be between 0 and 1: " + maxDeadRatio);
+        this.maxDeadRatio = maxDeadRatio;
+        this.compactionExecutor = executor;
     }
 
     @Override
-    public boolean addNewWord(String str) {
+    public synchronized boolean addNewWord(String str) {
         if (str.isEmpty())
             return false;
-        maxWordLength = Math.max(maxWordLength, str.length());
 
-        if (!wordSet.contains(str)) {
-            wordSet.add(str);
-            if (root == null)
-                root = new Node();
-            root.add(str, str);
+        if (wordSet.add(str)) {
+            TrieState current = state;
+            if (current != null) {
+                TrieState next = current.withAddedWord(str);
+                if (next.addedWords.size() > Math.max(MIN_ADDED_WORDS, (int) Math.sqrt(current.trie.words.length)))
+                    next = null;
+                state = next;
+            }
+            invalidateCache();
             return true;
         } else {
             return false;
         }
     }
 
-    public boolean removeWord(String str) {
+    @Override
+    public synchronized boolean removeWord(String str) {
         if (str.isEmpty())
             return false;
-        if (!wordSet.contains(str))
+        if (wordSet.remove(str)) {
+            TrieState current = state;
+            CompiledTrie compiled = current == null ? null : current.trie;
+            if (current != null && current.addedWords.contains(str)) {
+                state = current.withoutAddedWord(str);
+                // it may be in the trie being compiled
+                if (pendingRemovals != null)
+                    pendingRemovals.add(str);
+            } else if (compiled != null && compiled.remove(str)) {
+                deadWords++;
+                if (pendingRemovals != null)
+                    pendingRemovals.add(str);
+                if (deadWords > maxDeadRatio * compiled.words.length)
+                    startCompaction(compiled);
+            }
+            invalidateCache();
+            return true;
+        } else {
             return false;
-        root.remove(str);
-        return wordSet.remove(str);
+        }
     }
 
-    private void initWord(String word) {
-        wordLength = word.length();
-        if (cache == null) {
-            root.finalizeTree();
-            cache = new int[maxWordLength + 1][maxWordLength + 1];
+    /**
+     * @return The number of removed words whose nodes are still in the
+     *         compiled trie.
+     */
+    public synchronized int getDeadCount() {
+        return state == null ? 0 : deadWords;
+    }
 
-            for (int i = 0; i <= maxWordLength; i++) {
-                cache[i][0] = i;
-                cache[0][i] = i;
-            }
+    private void startCompaction(CompiledTrie compiled) {
+        if (pendingRemovals != null)
+            return;
+        if (compactionExecutor == null) {
+            state = null;
+            finalizeTree();
+            return;
+        }
+        String[] words = sortedWords();
+        List<String> removals = new ArrayList<>();
+        pendingRemovals = removals;
+        try {
+            CompletableFuture.supplyAsync(() -> CompiledTrie.build(words), compactionExecutor)
+                    .whenComplete((rebuilt, error) -> finishCompaction(compiled, removals, rebuilt));
+        } catch (RejectedExecutionException e) {
+            pendingRemovals = null;
         }
-        if (word.length() > maxWordLength) {
-            mat = new int[maxWordLength + 1][word.length() + 1];
+    }
 
-            for (int i = 0; i <= maxWordLength; i++)
-                mat[i][0] = i;
-            for (int j = 0; j <= wordLength; j++)
-                mat[0][j] = j;
-        } else {
-            mat = cache;
+    /**
+     * Removes the words removed since the compilation started from the new
+     * trie, which then replaces the old one, unless the old one was dropped
+     * meanwhile. The added words which are not in the new trie stay apart.
+     */
+    private synchronized void finishCompaction(CompiledTrie compiled, List<String> removals, CompiledTrie rebuilt) {
+        if (pendingRemovals != removals)
+            return;
+        pendingRemovals = null;
+        TrieState current = state;
+        if (rebuilt == null || current == null || current.trie != compiled)
+            return;
+        int dead = 0;
+        for (String word : removals)
+            if (rebuilt.remove(word))
+                dead++;
+        List<String> stillAdded = new ArrayList<>();
+        for (String word : current.addedWords) {
+            int node = rebuilt.find(word);
+            if (node < 0 || rebuilt.word(node) == null)
+                stillAdded.add(word);
         }
+        // the queries see the new trie with its added words at once
+        state = new TrieState(rebuilt, stillAdded);
+        deadWords = dead;
+        // too many words were removed meanwhile
+        if (deadWords > maxDeadRatio * rebuilt.words.length)
+            startCompaction(rebuilt);
+    }
+
+    private String[] sortedWords() {
+        String[] words = wordSet.toArray(new String[wordSet.size()]);
+        Arrays.sort(words);
+        return words;
+    }
 
-        wordChar = new Character[wordLength];
-        for (int i = 0; i < wordLength; i++) {
-            wordChar[i] = word.charAt(i);
+    /**
+     * Compiles the trie used by the searches, with the words added since the
+     * last compilation. It is done by the first query if it has not been
+     * called before.
+     */
+    public synchronized void finalizeTree() {
+        compiledState();
+    }
+
+    private synchronized TrieState compiledState() {
+        TrieState current = state;
+        if (current == null || !current.addedWords.isEmpty()) {
+            current = new TrieState(CompiledTrie.build(sortedWords()), Collections.emptyList());
+            state = current;
+            deadWords = 0;
+            pendingRemovals = null;
         }
+        return current;
     }
 
-    @Override
-    public String findClosestWord(String word) {
-        return findClosestWord(word, Integer.MAX_VALUE);
+    /**
+     * Replaces the words of an empty dictionary by the words of an already
+     * compiled trie. Visibility: package
+     */
+    synchronized void restoreTrie(CompiledTrie compiled) {
+        if (!wordSet.isEmpty())
+            throw new IllegalStateException("The dictionary is not empty.");
+        for (int id : compiled.wordIds)
+            if (id != CompiledTrie.NO_WORD)
+                wordSet.add(compiled.words[id]);
+        state = new TrieState(compiled, Collections.emptyList());
+        deadWords = compiled.words.length - wordSet.size();
+        invalidateCache();
+    }
+
+    /**
+     * @return The compiled trie, with all the words of the dictionary.
+     *         Visibility: package
+     */
+    CompiledTrie getTrie() {
+        TrieState current = state;
+        if (current == null || !current.addedWords.isEmpty())
+            current = compiledState();
+        return current.trie;
+    }
+
+    /**
+     * @return A compiled trie with all the words of the dictionary. The trie
+     *         used by the searches is left as it is: when words were added
+     *         since its compilation, a new trie is compiled. Visibility:
+     *         package
+     */
+    synchronized CompiledTrie trieOfAllWords() {
+        TrieState current = state;
+        if (current != null && current.addedWords.isEmpty())
+            return current.trie;
+        return CompiledTrie.build(sortedWords());
+    }
+
+    /**
+     * @return The compiled trie with the words added since its compilation,
+     *         compiling it if needed. A query reads it once. Visibility:
+     *         package
+     */
+    TrieState getSearchedState() {
+        TrieState current = state;
+        return current == null ? compiledState() : current;
     }
 
     @Override
-    public synchronized String findClosestWord(String word, double distance) {
+    protected String searchClosestWord(String word, double distance) {
         if (contains(word))
             return word;
         else if ((int) distance == 0)
             return null;
 
-        bestTerm = null;
-        initWord(word);
-
-        root.startSearch((int) distance);
+        TrieState current = getSearchedState();
+        CompiledTrie compiled = current.trie;
+        String bestTerm = null;
+        int bestScore = (int) distance;
+        if (compiled.getNbOfNodes() > 1) {
+            SearchContext context = SEARCH_CONTEXTS.get();
+            context.initWord(compiled, word);
+            int score = context.startSearch(bestScore);
+            bestTerm = context.bestTerm;
+            context.bestTerm = null;
+            if (bestTerm != null)
+                bestScore = score;
+        }
+        for (String term : current.addedWords) {
+            int score = ADDED_WORDS_DISTANCE.getDistanceInt(term, word, bestScore);
+            if (score < bestScore || (score == bestScore && (bestTerm == null || term.compareTo(bestTerm) < 0))) {
+                bestScore = score;
+                bestTerm = term;
+            }
+        }
         return bestTerm;
     }
 
-    private class Node {
-
-        private String value = null;
-        private Map<Character, Node> childrens = new HashMap<>();
-        private Node[] childrensArray = null;
-        private Character[] childrensArrayKey = null;
-        private int childrensSize = -1;
+    /**
+     * Find the closest word from a given word, within a given distance, with a
+     * weighted Levenshtein distance. The ties are broken alphabetically.
+     * 
+     * @param word
+     *            A word.
+     * @param distance
+     *            The maximum distance from the given word we accept results.
+     * @param weighted
+     *            The distance, whose rows are computed while walking down the
+     *            trie.
+     * @return The closest word found, within the given distance (null if
+     *         there is none).
+     */
+    public String findClosestWord(String word, double distance, WeightedLevenshteinDistance weighted) {
+        if (contains(word))
+            return word;
+        if (distance < 0)
+            return null;
 
-        private void add(String str, String word) {
-            if (str.isEmpty()) {
-                value = word;
-                return;
+        TrieState current = getSearchedState();
+        CompiledTrie compiled = current.trie;
+        SearchContext context = SEARCH_CONTEXTS.get();
+        context.initWord(compiled, word);
+        context.startWeightedRowsSearch(weighted, distance);
+        String bestTerm = context.bestTerm;
+        double bestScore = bestTerm == null ? distance : context.bestWeightedScore;
+        context.bestTerm = null;
+        for (String term : current.addedWords) {
+            double score = weighted.getDistance(term, word, bestScore);
+            if (score < bestScore || (score == bestScore && (bestTerm == null || term.compareTo(bestTerm) < 0))) {
+                bestScore = score;
+                bestTerm = term;
             }
-            Character first = str.charAt(0);
-            Node n = childrens.get(first);
-            if (n == null) {
-                n = new Node();
-                childrens.put(first, n);
+        }
+        return bestTerm;
+    }
+
+    /**
+     * The trie is compiled before the corrections start, so that the tasks do
+     * not wait for each other.
+     */
+    @Override
+    public Map<String, String> correctAll(Collection<String> words, double distance, Executor executor) {
+        getTrie();
+        return super.correctAll(words, distance, executor);
+    }
+
+    /**
+     * Finds the closest word, breaking the distance ties with the counts of
+     * the words (the highest count wins, then the first word alphabetically).
+     * Visibility: package
+     * 
+     * @param current
+     *            The compiled trie and the words added since, searched one by
+     *            one.
+     * @param counts
+     *            The counts of the words of the compiled trie, by word id.
+     * @param subtreeMaxCounts
+     *            The highest count of the words below each node of the
+     *            compiled trie (node included), used to stop exploring the
+     *            subtrees that cannot break a tie.
+     * @param countMap
+     *            The counts of all the words, for the added ones.
+     */
+    String findClosestWeightedWord(TrieState current, String word, int distance, int[] counts, int[] subtreeMaxCounts, WordCountMap countMap) {
+        if (distance < 0)
+            return null;
+        String bestTerm = null;
+        int bestScore = distance;
+        if (current.trie.getNbOfNodes() > 1) {
+            SearchContext context = SEARCH_CONTEXTS.get();
+            context.initWord(current.trie, word);
+            context.startWeightedSearch(distance, counts, subtreeMaxCounts);
+            bestTerm = context.bestTerm;
+            bestScore = context.bestScore;
+            context.bestTerm = null;
+        }
+        int bestCount = bestTerm == null ? 0 : countMap.get(bestTerm);
+        for (String term : current.addedWords) {
+            int score = ADDED_WORDS_DISTANCE.getDistanceInt(term, word, bestScore);
+            if (score > bestScore)
+                continue;
+            int count = countMap.get(term);
+            if (bestTerm == null || score < bestScore || count > bestCount || (count == bestCount && term.compareTo(bestTerm) < 0)) {
+                bestTerm = term;
+                bestScore = score;
+                bestCount = count;
             }
-            n.add(str.substring(1), word);
         }
+        return bestTerm;
+    }
 
-        private void finalizeTree() {
-            childrensSize = childrens.size();
-            childrensArray = new Node[childrensSize];
-            childrensArrayKey = new Character[childrensSize];
-            int i = 0;
-            for (Entry<Character, Node> entry : childrens.entrySet()) {
-                childrensArray[i] = entry.getValue();
-                childrensArrayKey[i] = entry.getKey();
-                entry.getValue().finalizeTree();
-                i++;
+    /**
+     * @return The order of the results of {@link #findClosestWords(String, int)}
+     *         and {@link #findAllWithin(String, double)}. Visibility: package
+     */
+    Comparator<Match<String>> matchOrder() {
+        return DEFAULT_ORDER;
+    }
+
+    @Override
+    public List<Match<String>> findClosestWords(String word, int k) {
+        Comparator<Match<String>> order = matchOrder();
+        PriorityQueue<Match<String>> best = BKTree.newWorstFirstQueue(k, order);
+        TrieState current = getSearchedState();
+        CompiledTrie compiled = current.trie;
+        SearchContext context = SEARCH_CONTEXTS.get();
+        context.initWord(compiled, word);
+        // the words are visited alphabetically: with the default order, a word
+        // at the distance of the worst kept one cannot replace it
+        context.collectClosest(0, -1, k, best, order == DEFAULT_ORDER);
+        for (String term : current.addedWords) {
+            int bound = best.size() < k ? Integer.MAX_VALUE - 1 : (int) best.peek().getDistance();
+            Match<String> match = new Match<>(term, ADDED_WORDS_DISTANCE.getDistanceInt(term, word, bound));
+            if (best.size() < k) {
+                best.add(match);
+            } else if (order.compare(match, best.peek()) < 0) {
+                best.poll();
+                best.add(match);
             }
         }
+        List<Match<String>> matches = BKTree.sortedMatches(best);
+        matches.sort(order);
+        return matches;
+    }
+
+    /**
+     * The words within a distance of at most {@value #AUTOMATON_MAX_DISTANCE}
+     * are found with a {@link LevenshteinAutomaton}.
+     */
+    @Override
+    public List<Match<String>> findAllWithin(String word, double distance) {
+        List<Match<String>> matches = new ArrayList<>();
+        if (distance < 0)
+            return matches;
+        if ((int) distance <= AUTOMATON_MAX_DISTANCE)
+            return findAll(new LevenshteinAutomaton(word, (int) distance));
+        TrieState current = getSearchedState();
+        CompiledTrie compiled = current.trie;
+        SearchContext context = SEARCH_CONTEXTS.get();
+        context.initWord(compiled, word);
+        context.collectWithin(0, -1, (int) distance, matches);
+        for (String term : current.addedWords) {
+            int score = ADDED_WORDS_DISTANCE.getDistanceInt(term, word, (int) distance);
+            if (score <= distance)
+                matches.add(new Match<>(term, score));
+        }
+        matches.sort(matchOrder());
+        return matches;
+    }
+
+    /**
+     * Find all the words of the dictionary accepted by a Levenshtein automaton.
+     * The branches of the trie are left as soon as the automaton dies.
+     * 
+     * @param automaton
+     *            The automaton of a word and a maximum distance.
+     * @return The words with their distance to the word of the automaton,
+     *         sorted by increasing distance, then alphabetically.
+     */
+    public List<Match<String>> findAll(LevenshteinAutomaton automaton) {
+        List<Match<String>> matches = new ArrayList<>();
+        TrieState current = getSearchedState();
+        CompiledTrie compiled = current.trie;
+        automaton.collectMatches(compiled, 0, automaton.getStartState(), matches);
+        for (String term : current.addedWords) {
+            int score = automaton.distance(term);
+            if (score <= automaton.getMaxDistance())
+                matches.add(new Match<>(term, score));
+        }
+        matches.sort(matchOrder());
+        return matches;
+    }
+
+    /**
+     * A compiled trie and the words added since its compilation, published
+     * together so that a query never sees the trie of a compaction with the
+     * added words of the previous trie (or the other way around). Visibility:
+     * package
+     */
+    static final class TrieState {
+
+        final CompiledTrie trie;
+        // unmodifiable, searched one by one
+        final List<String> addedWords;
+
+        private TrieState(CompiledTrie trie, List<String> addedWords) {
+            this.trie = trie;
+            this.addedWords = Collections.unmodifiableList(addedWords);
+        }
+
+        private TrieState withAddedWord(String word) {
+            List<String> words = new ArrayList<>(addedWords.size() + 1);
+            words.addAll(addedWords);
+            words.add(word);
+            return new TrieState(trie, words);
+        }
 
-        private void remove(String str) {
-            if (str.isEmpty())
-                value = null;
-            else
-                childrens.get(str.charAt(0)).remove(str.substring(1));
+        private TrieState withoutAddedWord(String word) {
+            List<String> words = new ArrayList<>(addedWords);
+            words.remove(word);
+            return new TrieState(trie, words);
         }
 
-        public int startSearch(int maxScore) {
+    }
+
+    /**
+     * The state of one search: the Levenshtein matrix (one row per depth in
+     * the trie) and the best term found. Reused by the queries of a thread.
+     */
+    private static final class SearchContext {
+
+        private CompiledTrie trie;
+        private int[][] mat = new int[0][0];
+        private char[] wordChar = new char[0];
+        private int wordLength;
+        private String bestTerm;
+        // state of the weighted searches
+        private int bestId;
+        private int bestScore;
+        private int[] counts;
+        private int[] subtreeMaxCounts;
+        // state of the searches with a weighted distance
+        private WeightedLevenshteinDistance weighted;
+        private double[][] weightedRows = new double[0][0];
+        private double[] weightedRowMins = new double[0];
+        private char[] path = new char[0];
+        private double bestWeightedScore;
+
+        private void initWord(CompiledTrie trie, String word) {
+            this.trie = trie;
+            wordLength = word.length();
+            int nbRows = trie.maxDepth + 1;
+            int nbColumns = wordLength + 1;
+            if (mat.length < nbRows || mat[0].length < nbColumns) {
+                nbRows = Math.max(nbRows, mat.length);
+                nbColumns = Math.max(nbColumns, mat.length == 0 ? 0 : mat[0].length);
+                mat = new int[nbRows][nbColumns];
+                for (int i = 0; i < nbRows; i++)
+                    mat[i][0] = i;
+                for (int j = 0; j < nbColumns; j++)
+                    mat[0][j] = j;
+            }
+
+            if (wordChar.length < wordLength)
+                wordChar = new char[wordLength];
+            word.getChars(0, wordLength, wordChar, 0);
+            bestTerm = null;
+        }
+
+        private int startSearch(int maxScore) {
             int currScore = maxScore;
 
-            for (int i = 0; i < childrensSize; i++) {
-                int temp = childrensArray[i].search(0, childrensArrayKey[i], currScore);
+            int lastChild = trie.firstChild[1];
+            for (int child = trie.firstChild[0]; child < lastChild; child++) {
+                int temp = search(child, 0, currScore);
                 if (temp < currScore) {
                     currScore = temp;
                     if (currScore == 0)
@@ -171,7 +585,8 @@ public class LevenshteinDictionary extends Dictionary {
             return currScore;
         }
 
-        protected int search(int currIndex, Character letter, int maxScore) {
+        private int search(int node, int currIndex, int maxScore) {
+            char letter = trie.labels[node];
             int[] previousRow = mat[currIndex];
             int currentIndex = currIndex + 1;
             int[] currentRow = mat[currentIndex];
@@ -182,7 +597,7 @@ public class LevenshteinDictionary extends Dictionary {
                 int insertCost = currentRow[i] + 1;
                 int deleteCost = previousRow[i + 1] + 1;
                 int replaceCost = previousRow[i];
-                if (!wordChar[i].equals(letter))
+                if (wordChar[i] != letter)
                     replaceCost++;
 
                 int min = insertCost;
@@ -203,6 +618,7 @@ public class LevenshteinDictionary extends Dictionary {
             }
 
             int result = maxScore;
+            String value = trie.word(node);
             // found a valid result
             if (currentRow[wordLength] <= result && value != null) {
                 result = currentRow[wordLength];
@@ -222,7 +638,7 @@ public class LevenshteinDictionary extends Dictionary {
             // we check if the rest of the word is in the trie (perfect match)
             for (int i = firstCurrentRowMinIndex; i <= lastCurrentRowMinIndex; i++) {
                 if (currentRow[i] == currentRowMin) {
-                    String found = find(i);
+                    String found = find(node, i);
                     if (found != null) {
                         bestTerm = found;
                         return currentRowMin;
@@ -236,8 +652,9 @@ public class LevenshteinDictionary extends Dictionary {
                 return result;
 
             if (currentRowMin < result) {
-                for (int i = 0; i < childrensSize; i++) {
-                    int temp = childrensArray[i].search(currentIndex, childrensArrayKey[i], result);
+                int lastChild = trie.firstChild[node + 1];
+                for (int child = trie.firstChild[node]; child < lastChild; child++) {
+                    int temp = search(child, currentIndex, result);
                     if (temp < result) {
                         result = temp;
                         if (result - 1 == currentRowMin)
@@ -248,13 +665,191 @@ public class LevenshteinDictionary extends Dictionary {
             return result;
         }
 
-        private String find(int index) {
-            if (index == wordLength)
-                return value;
-            Node n = childrens.get(wordChar[index]);
-            if (n != null)
-                return n.find(index + 1);
-            return null;
+        private void startWeightedRowsSearch(WeightedLevenshteinDistance weighted, double maxScore) {
+            int nbRows = trie.maxDepth + 1;
+            if (weightedRows.length < nbRows || weightedRows[0].length < wordLength + 1) {
+                weightedRows = new double[Math.max(nbRows, weightedRows.length)][Math.max(wordLength + 1, weightedRows.length == 0 ? 0 : weightedRows[0].length)];
+                weightedRowMins = new double[weightedRows.length];
+                path = new char[weightedRows.length];
+            }
+            this.weighted = weighted;
+            bestId = CompiledTrie.NO_WORD;
+            bestWeightedScore = maxScore;
+            weightedRowMins[0] = weighted.firstRow(wordChar, wordLength, weightedRows[0]);
+            searchWeightedRows(0, 0);
+            if (bestId != CompiledTrie.NO_WORD)
+                bestTerm = trie.words[bestId];
+            this.weighted = null;
+        }
+
+        /**
+         * Explores the children of a node at the given depth, whose path is in
+         * path. A subtree is skipped when the lower bound of its distances is
+         * not better than the best word found.
+         */
+        private void searchWeightedRows(int node, int depth) {
+            int i = depth + 1;
+            int lastChild = trie.firstChild[node + 1];
+            for (int child = trie.firstChild[node]; child < lastChild; child++) {
+                path[depth] = trie.labels[child];
+                weightedRowMins[i] = weighted.nextRow(path, i, weightedRows, wordChar, wordLength);
+
+                int id = trie.wordIds[child];
+                if (id != CompiledTrie.NO_WORD) {
+                    double score = weightedRows[i][wordLength];
+                    if (score < bestWeightedScore || (score == bestWeightedScore && bestId == CompiledTrie.NO_WORD)) {
+                        bestWeightedScore = score;
+                        bestId = id;
+                    }
+                }
+
+                double bound = weighted.lowerBound(weightedRowMins, i);
+                if (bound < bestWeightedScore || (bound == bestWeightedScore && bestId == CompiledTrie.NO_WORD))
+                    searchWeightedRows(child, i);
+            }
+        }
+
+        private void startWeightedSearch(int maxScore, int[] counts, int[] subtreeMaxCounts) {
+            this.counts = counts;
+            this.subtreeMaxCounts = subtreeMaxCounts;
+            bestId = CompiledTrie.NO_WORD;
+            bestScore = maxScore;
+            // the row of the root is mat[0], its minimum is 0
+            searchWeighted(0, 0, 0);
+            if (bestId != CompiledTrie.NO_WORD)
+                bestTerm = trie.words[bestId];
+            this.counts = null;
+            this.subtreeMaxCounts = null;
+        }
+
+        /**
+         * Explores the children of a node whose row is mat[currentIndex]. A
+         * subtree is skipped when all its words are further than the best one,
+         * or at the same distance without a higher count. The minimum of the
+         * rows never decreases along a branch.
+         */
+        private void searchWeighted(int node, int currentIndex, int nodeRowMin) {
+            int lastChild = trie.firstChild[node + 1];
+            for (int child = trie.firstChild[node]; child < lastChild; child++) {
+                if (nodeRowMin > bestScore)
+                    return;
+                if (nodeRowMin == bestScore && bestId != CompiledTrie.NO_WORD && subtreeMaxCounts[child] <= counts[bestId])
+                    continue;
+
+                int rowMin = computeRow(child, currentIndex);
+                if (rowMin > bestScore)
+                    continue;
+
+                int[] currentRow = mat[currentIndex + 1];
+                int id = trie.wordIds[child];
+                if (id != CompiledTrie.NO_WORD) {
+                    int score = currentRow[wordLength];
+                    if (score < bestScore || (score == bestScore && (bestId == CompiledTrie.NO_WORD || counts[id] > counts[bestId]))) {
+                        bestScore = score;
+                        bestId = id;
+                    }
+                }
+
+                if (rowMin < bestScore || bestId == CompiledTrie.NO_WORD || subtreeMaxCounts[child] > counts[bestId])
+                    searchWeighted(child, currentIndex + 1, rowMin);
+            }
+        }
+
+        /**
+         * Collects the words of the subtree within the given distance. The
+         * subtrees are pruned as soon as their row minimum is above it.
+         */
+        private void collectWithin(int node, int currIndex, int maxScore, List<Match<String>> matches) {
+            int currentIndex = currIndex + 1;
+            int currentRowMin = node == 0 ? 0 : computeRow(node, currIndex);
+            int[] currentRow = mat[currentIndex];
+
+            String value = trie.word(node);
+            if (value != null && currentRow[wordLength] <= maxScore)
+                matches.add(new Match<>(value, currentRow[wordLength]));
+
+            if (currentRowMin <= maxScore) {
+                int lastChild = trie.firstChild[node + 1];
+                for (int child = trie.firstChild[node]; child < lastChild; child++)
+                    collectWithin(child, currentIndex, maxScore, matches);
+            }
+        }
+
+        /**
+         * Collects the k closest words of the subtree, in the order of the
+         * queue.
+         * 
+         * @param pruneTies
+         *            TRUE if a word at the distance of the worst one of the
+         *            queue cannot replace it.
+         */
+        private void collectClosest(int node, int currIndex, int k, PriorityQueue<Match<String>> best, boolean pruneTies) {
+            int currentIndex = currIndex + 1;
+            int currentRowMin = node == 0 ? 0 : computeRow(node, currIndex);
+            int[] currentRow = mat[currentIndex];
+
+            String value = trie.word(node);
+            if (value != null) {
+                Match<String> match = new Match<>(value, currentRow[wordLength]);
+                if (best.size() < k) {
+                    best.add(match);
+                } else if (best.comparator().compare(match, best.peek()) > 0) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+
+            int lastChild = trie.firstChild[node + 1];
+            for (int child = trie.firstChild[node]; child < lastChild; child++) {
+                if (best.size() == k) {
+                    double worst = best.peek().getDistance();
+                    if (currentRowMin > worst || (pruneTies && currentRowMin == worst))
+                        return;
+                }
+                collectClosest(child, currentIndex, k, best, pruneTies);
+            }
+        }
+
+        /**
+         * Computes the row of the matrix corresponding to the node (at the
+         * depth currIndex + 1).
+         * 
+         * @return The minimum of the row.
+         */
+        private int computeRow(int node, int currIndex) {
+            char letter = trie.labels[node];
+            int[] previousRow = mat[currIndex];
+            int[] currentRow = mat[currIndex + 1];
+            int rowMin = currentRow[0];
+            for (int i = 0; i < wordLength; i++) {
+                int min = previousRow[i];
+                if (wordChar[i] != letter)
+                    min++;
+                int insertCost = currentRow[i] + 1;
+                int deleteCost = previousRow[i + 1] + 1;
+                if (insertCost < min)
+                    min = insertCost;
+                if (deleteCost < min)
+                    min = deleteCost;
+                currentRow[i + 1] = min;
+                if (min < rowMin)
+                    rowMin = min;
+            }
+            return rowMin;
+        }
+
+        /**
+         * @return The word made of the prefix of the node followed by the end
+         *         of the searched word (from index), or null.
+         */
+        private String find(int node, int index) {
+            int current = node;
+            for (int i = index; i < wordLength; i++) {
+                current = trie.child(current, wordChar[i]);
+                if (current < 0)
+                    return null;
+            }
+            return trie.word(current);
         }
 
     }
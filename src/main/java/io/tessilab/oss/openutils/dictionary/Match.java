@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import java.util.Comparator;
+
+/**
+ * An immutable search result: a term of a dictionary and its distance to the
+ * searched term.
+ * 
+ * @param <E>
+ *            The type of the terms.
+ */
+public final class Match<E> {
+
+    private final E term;
+    private final double distance;
+
+    public Match(E term, double distance) {
+        this.term = term;
+        this.distance = distance;
+    }
+
+    public E getTerm() {
+        return term;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return A comparator ordering the matches by increasing distance, then
+     *         by term.
+     */
+    public static <T extends Comparable<? super T>> Comparator<Match<T>> byDistanceThenTerm() {
+        return Comparator.<Match<T>> comparingDouble(Match::getDistance).thenComparing(Match::getTerm);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        long temp = Double.doubleToLongBits(distance);
+        result = prime * result + (int) (temp ^ (temp >>> 32));
+        result = prime * result + ((term == null) ? 0 : term.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Match<?> other = (Match<?>) obj;
+        if (Double.doubleToLongBits(distance) != Double.doubleToLongBits(other.distance))
+            return false;
+        if (term == null) {
+            if (other.term != null)
+                return false;
+        } else if (!term.equals(other.term))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + term + ", " + distance + ")";
+    }
+
+}
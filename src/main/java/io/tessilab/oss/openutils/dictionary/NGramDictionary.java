@@ -0,0 +1,426 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <b>A dictionary indexed by the q-grams of its words (an inverted index), for
+ * large dictionaries.</b>
+ * <p>
+ * The words are padded with q-1 sentinels on each side, so a word of n chars
+ * has n+q-1 q-grams, and one edit changes at most q of them. Hence two words
+ * within a distance d share at least max(grams1, grams2) - q*d q-grams (as
+ * multisets). A query counts the q-grams it shares with each word from the
+ * posting lists of its own q-grams, derives from the counts a lower bound of
+ * the distance of each word, and only checks the words whose bound is small
+ * enough, by increasing bound, with a bounded Levenshtein distance. The words
+ * sharing no q-gram with the query are only checked when their bound allows
+ * it.
+ * <p>
+ * The q-grams are encoded as longs and the posting lists are arrays of word
+ * ids. Several threads can query the dictionary at once, but modifications
+ * must not happen concurrently with queries. The removed words are only
+ * cleared from the word list, their ids stay in the posting lists.
+ */
+public class NGramDictionary extends Dictionary {
+
+    public static final int DEFAULT_Q = 3;
+    public static final int MAX_Q = 3;
+
+    private static final LevenshteinDistance LEVENSHTEIN = new LevenshteinDistance(1e-3);
+    private static final ThreadLocal<Counts> COUNTS = ThreadLocal.withInitial(Counts::new);
+
+    private final int q;
+    // initialized by initWordTree, as the base constructor calls it
+    private List<String> words;
+    private GramIds gramIds;
+    // the ids of the words of each q-gram, once per occurrence
+    private int[][] postings;
+    private int[] postingSizes;
+
+    public NGramDictionary() {
+        this(DEFAULT_Q);
+    }
+
+    /**
+     * @param q
+     *            The length of the q-grams, between 1 and {@link #MAX_Q}.
+     */
+    public NGramDictionary(int q) {
+        super();
+        if (q < 1 || q > MAX_Q)
+            throw new IllegalArgumentException("The length of the q-grams must be between 1 and " + MAX_Q + ".");
+        this.q = q;
+    }
+
+    /**
+     * Import a whole dictionary from a text file.
+     * 
+     * @param path
+     *            The path of the file.
+     */
+    public NGramDictionary(String path) {
+        this(path, DEFAULT_Q);
+    }
+
+    /**
+     * Import a whole dictionary from a text file.
+     * 
+     * @param path
+     *            The path of the file.
+     * @param q
+     *            The length of the q-grams, between 1 and {@link #MAX_Q}.
+     */
+    public NGramDictionary(String path, int q) {
+        this(q);
+        initFromFile(path);
+    }
+
+    @Override
+    protected void initWordTree() {
+        words = new ArrayList<>();
+        gramIds = new GramIds();
+        postings = new int[16][];
+        postingSizes = new int[16];
+    }
+
+    public int getQ() {
+        return q;
+    }
+
+    @Override
+    public boolean addNewWord(String str) {
+        if (!wordSet.add(str))
+            return false;
+        int id = words.size();
+        words.add(str);
+        long[] grams = gramsOf(str);
+        Arrays.sort(grams);
+        for (long gram : grams)
+            addToPosting(gramIds.add(gram), id);
+        invalidateCache();
+        return true;
+    }
+
+    @Override
+    public boolean removeWord(String str) {
+        if (!wordSet.remove(str))
+            return false;
+        if (str.isEmpty()) {
+            words.set(words.indexOf(str), null);
+        } else {
+            // the word is in the posting list of its first q-gram
+            int gramId = gramIds.get(gramsOf(str)[0]);
+            for (int i = 0; i < postingSizes[gramId]; i++) {
+                int id = postings[gramId][i];
+                if (str.equals(words.get(id)))
+                    words.set(id, null);
+            }
+        }
+        invalidateCache();
+        return true;
+    }
+
+    private void addToPosting(int gramId, int id) {
+        if (gramId == postings.length) {
+            postings = Arrays.copyOf(postings, 2 * postings.length);
+            postingSizes = Arrays.copyOf(postingSizes, postings.length);
+        }
+        int[] posting = postings[gramId];
+        if (posting == null) {
+            posting = new int[2];
+            postings[gramId] = posting;
+        } else if (postingSizes[gramId] == posting.length) {
+            posting = Arrays.copyOf(posting, 2 * posting.length);
+            postings[gramId] = posting;
+        }
+        posting[postingSizes[gramId]++] = id;
+    }
+
+    /**
+     * @return The number of q-grams of a word of the given length.
+     */
+    private int nbGrams(int length) {
+        return length == 0 ? 0 : length + q - 1;
+    }
+
+    /**
+     * @return The q-grams of the padded word, each char being encoded on 17
+     *         bits as its value + 1, the sentinel as 0.
+     */
+    private long[] gramsOf(String word) {
+        int length = word.length();
+        long[] grams = new long[nbGrams(length)];
+        for (int start = 0; start < grams.length; start++) {
+            long gram = 0;
+            for (int p = start; p < start + q; p++) {
+                int i = p - (q - 1);
+                gram = (gram << 17) | (i < 0 || i >= length ? 0 : word.charAt(i) + 1);
+            }
+            grams[start] = gram;
+        }
+        return grams;
+    }
+
+    /**
+     * The closest word within the distance. The ties are broken
+     * alphabetically.
+     */
+    @Override
+    protected String searchClosestWord(String word, double distance) {
+        if (contains(word))
+            return word;
+        List<Match<String>> matches = search(word, distance, 1);
+        return matches.isEmpty() ? null : matches.get(0).getTerm();
+    }
+
+    @Override
+    public List<Match<String>> findAllWithin(String word, double distance) {
+        return search(word, distance, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Match<String>> findClosestWords(String word, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("The number of matches must be positive.");
+        return search(word, Integer.MAX_VALUE, k);
+    }
+
+    /**
+     * @return The k closest words within the distance, sorted by increasing
+     *         distance, then alphabetically.
+     */
+    private List<Match<String>> search(String word, double distance, int k) {
+        if (distance < 0)
+            return new ArrayList<>();
+        Search search = new Search(word, (int) Math.min(distance, Integer.MAX_VALUE - 1), k);
+        search.run();
+        List<Match<String>> matches = new ArrayList<>(search.best);
+        matches.sort(Match.byDistanceThenTerm());
+        return matches;
+    }
+
+    /**
+     * The state of one query.
+     */
+    private final class Search {
+
+        private final String word;
+        private final int maxDistance;
+        private final int k;
+        private final int nbGrams;
+        // the k best matches, the worst first
+        private final PriorityQueue<Match<String>> best;
+
+        private Search(String word, int maxDistance, int k) {
+            this.word = word;
+            this.maxDistance = maxDistance;
+            this.k = k;
+            nbGrams = nbGrams(word.length());
+            best = new PriorityQueue<>(Collections.reverseOrder(Match.<String> byDistanceThenTerm()));
+        }
+
+        /**
+         * @return The greatest distance a new match can have.
+         */
+        private int bound() {
+            return best.size() < k ? maxDistance : (int) best.peek().getDistance();
+        }
+
+        private void run() {
+            Counts counts = COUNTS.get();
+            counts.reset(words.size());
+            try {
+                countSharedGrams(counts);
+
+                // the words sharing q-grams, by increasing lower bound
+                long[] candidates = new long[counts.nbTouched];
+                int nbCandidates = 0;
+                for (int t = 0; t < counts.nbTouched; t++) {
+                    int id = counts.touched[t];
+                    if (words.get(id) == null)
+                        continue;
+                    int lowerBound = lowerBound(id, counts.shared[id]);
+                    if (lowerBound <= maxDistance)
+                        candidates[nbCandidates++] = ((long) lowerBound << 32) | id;
+                }
+                Arrays.sort(candidates, 0, nbCandidates);
+                for (int c = 0; c < nbCandidates; c++) {
+                    if ((int) (candidates[c] >>> 32) > bound())
+                        break;
+                    check((int) candidates[c]);
+                }
+
+                // the other words share no q-gram, their bound is at least
+                // nbGrams / q
+                if ((nbGrams + q - 1) / q <= bound()) {
+                    for (int id = 0; id < words.size(); id++) {
+                        if (counts.shared[id] == 0 && words.get(id) != null && lowerBound(id, 0) <= bound())
+                            check(id);
+                    }
+                }
+            } finally {
+                counts.clear();
+            }
+        }
+
+        /**
+         * Counts the q-grams each word shares with the query, as multisets.
+         * The occurrences of a q-gram in a word are consecutive in its posting
+         * list.
+         */
+        private void countSharedGrams(Counts counts) {
+            long[] grams = gramsOf(word);
+            Arrays.sort(grams);
+            for (int start = 0; start < grams.length;) {
+                int end = start + 1;
+                while (end < grams.length && grams[end] == grams[start])
+                    end++;
+                int occurrences = end - start;
+                int gramId = gramIds.get(grams[start]);
+                if (gramId >= 0) {
+                    int[] posting = postings[gramId];
+                    int size = postingSizes[gramId];
+                    for (int i = 0; i < size;) {
+                        int id = posting[i];
+                        int run = 1;
+                        while (i + run < size && posting[i + run] == id)
+                            run++;
+                        counts.add(id, Math.min(run, occurrences));
+                        i += run;
+                    }
+                }
+                start = end;
+            }
+        }
+
+        private int lowerBound(int id, int shared) {
+            int length = words.get(id).length();
+            int missing = Math.max(nbGrams, nbGrams(length)) - shared;
+            return Math.max(Math.abs(length - word.length()), (missing + q - 1) / q);
+        }
+
+        private void check(int id) {
+            String term = words.get(id);
+            int limit = bound();
+            int distance = LEVENSHTEIN.getDistanceInt(word, term, limit);
+            if (distance > limit)
+                return;
+            Match<String> match = new Match<>(term, distance);
+            if (best.size() < k)
+                best.add(match);
+            else if (Match.<String> byDistanceThenTerm().compare(match, best.peek()) < 0) {
+                best.poll();
+                best.add(match);
+            }
+        }
+    }
+
+    /**
+     * The numbers of shared q-grams of a thread, with the ids of the words
+     * having a non-zero count, so that only them are cleared.
+     */
+    private static final class Counts {
+
+        private int[] shared = new int[0];
+        private int[] touched = new int[16];
+        private int nbTouched;
+
+        private void reset(int nbWords) {
+            if (shared.length < nbWords)
+                shared = new int[Math.max(nbWords, 2 * shared.length)];
+        }
+
+        private void add(int id, int count) {
+            if (shared[id] == 0) {
+                if (nbTouched == touched.length)
+                    touched = Arrays.copyOf(touched, 2 * touched.length);
+                touched[nbTouched++] = id;
+            }
+            shared[id] += count;
+        }
+
+        private void clear() {
+            for (int t = 0; t < nbTouched; t++)
+                shared[touched[t]] = 0;
+            nbTouched = 0;
+        }
+    }
+
+    /**
+     * A map from q-grams to consecutive ids, with open addressing (linear
+     * probing). The q-grams are never 0.
+     */
+    private static final class GramIds {
+
+        private long[] keys = new long[16];
+        private int[] ids = new int[16];
+        private int size;
+
+        /**
+         * @return The id of the q-gram, or -1 if it is not in the map.
+         */
+        private int get(long gram) {
+            int index = indexOf(gram);
+            return keys[index] == 0 ? -1 : ids[index];
+        }
+
+        /**
+         * @return The id of the q-gram, added if needed.
+         */
+        private int add(long gram) {
+            int index = indexOf(gram);
+            if (keys[index] != 0)
+                return ids[index];
+            keys[index] = gram;
+            ids[index] = size;
+            if (++size > keys.length / 2)
+                rehash(2 * keys.length);
+            return size - 1;
+        }
+
+        private int indexOf(long gram) {
+            int mask = keys.length - 1;
+            long h = gram * 0x9E3779B97F4A7C15L;
+            int i = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[i] != 0 && keys[i] != gram)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[capacity];
+            ids = new int[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    ids[index] = oldIds[i];
+                }
+            }
+        }
+    }
+
+}
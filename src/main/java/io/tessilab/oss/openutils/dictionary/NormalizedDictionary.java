@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import io.tessilab.oss.openutils.StringUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
+
+/**
+ * <b>A dictionary of normalized words.</b>
+ * <p>
+ * The words are normalized when they are added and when they are queried
+ * (with {@link StringUtils#normalizeWord(String)} by default, as the
+ * normalized values of the hOCR words), and the normalized keys are stored in
+ * a backend dictionary, which answers the queries. The queries return the
+ * normalized keys, and {@link #getSurfaceForms(String)} gives the words added
+ * under a key.
+ * <p>
+ * The normalizations are cached (up to {@link #MAX_CACHED_NORMALIZATIONS}
+ * distinct words), so each distinct word is normalized once. The words which
+ * are already normalized (as {@code HocrXWord.getNormalizedValue()}) can be
+ * queried directly with {@link #findClosestKey(String, double)}. Several
+ * threads can query the dictionary at once, but modifications must not happen
+ * concurrently with queries.
+ */
+public class NormalizedDictionary extends Dictionary {
+
+    public static final int MAX_CACHED_NORMALIZATIONS = 1 << 16;
+
+    private final Dictionary backend;
+    private final UnaryOperator<String> normalizer;
+    private final Map<String, String> normalizations = new ConcurrentHashMap<>();
+    // the words added under each key, in the order they were added
+    private final Map<String, String[]> surfaceForms = new HashMap<>();
+
+    /**
+     * A dictionary normalizing with {@link StringUtils#normalizeWord(String)},
+     * backed by a {@link Dictionary}.
+     */
+    public NormalizedDictionary() {
+        this(new Dictionary());
+    }
+
+    /**
+     * A dictionary normalizing with {@link StringUtils#normalizeWord(String)}.
+     * 
+     * @param backend
+     *            The empty dictionary storing the normalized keys.
+     */
+    public NormalizedDictionary(Dictionary backend) {
+        this(backend, StringUtils::normalizeWord);
+    }
+
+    /**
+     * @param backend
+     *            The empty dictionary storing the normalized keys.
+     * @param normalizer
+     *            The normalization of the words.
+     */
+    public NormalizedDictionary(Dictionary backend, UnaryOperator<String> normalizer) {
+        super();
+        if (backend == null || normalizer == null)
+            throw new IllegalArgumentException("The backend and the normalizer cannot be null.");
+        if (!backend.isEmpty())
+            throw new IllegalArgumentException("The backend dictionary must be empty.");
+        this.backend = backend;
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * Import a whole dictionary from a text file.
+     * 
+     * @param path
+     *            The path of the file.
+     */
+    public NormalizedDictionary(String path) {
+        this();
+        initFromFile(path);
+    }
+
+    /**
+     * The keys are stored in the backend, the words added in the word set.
+     */
+    @Override
+    protected void initWordTree() {
+        wordTree = null;
+    }
+
+    /**
+     * @return The dictionary storing the normalized keys.
+     */
+    public Dictionary getBackend() {
+        return backend;
+    }
+
+    /**
+     * @param word
+     *            A word.
+     * @return The normalized word.
+     */
+    public String normalize(String word) {
+        String key = normalizations.get(word);
+        if (key == null) {
+            key = normalizer.apply(word);
+            if (normalizations.size() < MAX_CACHED_NORMALIZATIONS)
+                normalizations.put(word, key);
+        }
+        return key;
+    }
+
+    /**
+     * Add a word to the dictionary, under its normalized key.
+     * 
+     * @param str
+     *            The word to add.
+     * @return TRUE if the word was not already in the dictionary.
+     */
+    @Override
+    public boolean addNewWord(String str) {
+        if (!wordSet.add(str))
+            return false;
+        String key = normalize(str);
+        String[] forms = surfaceForms.get(key);
+        if (forms == null) {
+            surfaceForms.put(key, new String[] { str });
+            backend.addNewWord(key);
+        } else {
+            forms = Arrays.copyOf(forms, forms.length + 1);
+            forms[forms.length - 1] = str;
+            surfaceForms.put(key, forms);
+        }
+        invalidateCache();
+        return true;
+    }
+
+    /**
+     * Remove a word from the dictionary. Its key is removed from the backend
+     * when no other word has it.
+     * 
+     * @param str
+     *            The word to remove.
+     * @return TRUE if the word was in the dictionary.
+     */
+    @Override
+    public boolean removeWord(String str) {
+        if (!wordSet.remove(str))
+            return false;
+        String key = normalize(str);
+        String[] forms = surfaceForms.get(key);
+        if (forms.length == 1) {
+            surfaceForms.remove(key);
+            backend.removeWord(key);
+        } else {
+            String[] remaining = new String[forms.length - 1];
+            int i = 0;
+            for (String form : forms)
+                if (!form.equals(str))
+                    remaining[i++] = form;
+            surfaceForms.put(key, remaining);
+        }
+        invalidateCache();
+        return true;
+    }
+
+    /**
+     * Sets the compaction of the backend.
+     */
+    @Override
+    public void setCompaction(double maxDeadRatio, Executor executor) {
+        backend.setCompaction(maxDeadRatio, executor);
+    }
+
+    /**
+     * @return TRUE if a word of the dictionary has the same normalized key as
+     *         the given word.
+     */
+    @Override
+    public boolean contains(String word) {
+        return backend.contains(normalize(word));
+    }
+
+    /**
+     * @param key
+     *            A normalized key.
+     * @return The words added under the key, in the order they were added.
+     */
+    public List<String> getSurfaceForms(String key) {
+        String[] forms = surfaceForms.get(key);
+        return forms == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(forms));
+    }
+
+    /**
+     * @return The number of distinct normalized keys.
+     */
+    public int keyCount() {
+        return surfaceForms.size();
+    }
+
+    /**
+     * The key closest to the normalized word.
+     */
+    @Override
+    protected String searchClosestWord(String word, double distance) {
+        return findClosestKey(normalize(word), distance);
+    }
+
+    /**
+     * Find the closest key of a word which is already normalized.
+     * 
+     * @param key
+     *            A normalized word.
+     * @param distance
+     *            The maximum distance from the given key we accept results.
+     * @return The closest key, or null if there is none within the distance.
+     */
+    public String findClosestKey(String key, double distance) {
+        return backend.findClosestWord(key, distance);
+    }
+
+    /**
+     * @return The closest keys of the normalized word.
+     */
+    @Override
+    public List<Match<String>> findClosestWords(String word, int k) {
+        return backend.findClosestWords(normalize(word), k);
+    }
+
+    /**
+     * @return The keys within the distance from the normalized word.
+     */
+    @Override
+    public List<Match<String>> findAllWithin(String word, double distance) {
+        return backend.findAllWithin(normalize(word), distance);
+    }
+
+}
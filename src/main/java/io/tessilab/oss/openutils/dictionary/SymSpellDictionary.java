@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <b>A dictionary indexed by symmetric deletes (as in SymSpell), for small
+ * maximum distances.</b>
+ * <p>
+ * Each word is indexed under all the strings obtained by deleting up to
+ * maxEditDistance chars from its prefix (its first prefixLength chars). Two
+ * words within a distance d have a common delete of their prefixes with at
+ * most d deletions on each side, so a query only looks up the deletes of its
+ * own prefix, then checks the candidates with a bounded Levenshtein distance.
+ * Capping the prefix length bounds the number of deletes per word.
+ * <p>
+ * The queries only find the words within maxEditDistance: larger distances are
+ * capped (so {@link #findClosestWord(String)} returns null when there is no
+ * word within maxEditDistance). Several threads can query the dictionary at
+ * once, but modifications must not happen concurrently with queries. The
+ * removed words are only cleared from the word list, their ids stay in the
+ * posting lists.
+ */
+public class SymSpellDictionary extends Dictionary {
+
+    public static final int DEFAULT_MAX_EDIT_DISTANCE = 2;
+    public static final int DEFAULT_PREFIX_LENGTH = 7;
+
+    private static final LevenshteinDistance LEVENSHTEIN = new LevenshteinDistance(1e-3);
+
+    private final int maxEditDistance;
+    private final int prefixLength;
+    // initialized by initWordTree, as the base constructor calls it
+    private List<String> words;
+    // the ids of the words of each delete, the number of ids being at index 0
+    private Map<String, int[]> deletes;
+
+    public SymSpellDictionary() {
+        this(DEFAULT_MAX_EDIT_DISTANCE, DEFAULT_PREFIX_LENGTH);
+    }
+
+    /**
+     * @param maxEditDistance
+     *            The greatest distance the queries can find.
+     * @param prefixLength
+     *            The number of chars of the words that are indexed, greater
+     *            than maxEditDistance.
+     */
+    public SymSpellDictionary(int maxEditDistance, int prefixLength) {
+        super();
+        if (maxEditDistance < 0)
+            throw new IllegalArgumentException("The maximum edit distance must not be negative.");
+        if (prefixLength <= maxEditDistance)
+            throw new IllegalArgumentException("The prefix length must be greater than the maximum edit distance.");
+        this.maxEditDistance = maxEditDistance;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * Import a whole dictionary from a text file.
+     * 
+     * @param path
+     *            The path of the file.
+     */
+    public SymSpellDictionary(String path) {
+        this(path, DEFAULT_MAX_EDIT_DISTANCE, DEFAULT_PREFIX_LENGTH);
+    }
+
+    /**
+     * Import a whole dictionary from a text file.
+     * 
+     * @param path
+     *            The path of the file.
+     * @param maxEditDistance
+     *            The greatest distance the queries can find.
+     * @param prefixLength
+     *            The number of chars of the words that are indexed, greater
+     *            than maxEditDistance.
+     */
+    public SymSpellDictionary(String path, int maxEditDistance, int prefixLength) {
+        this(maxEditDistance, prefixLength);
+        initFromFile(path);
+    }
+
+    @Override
+    protected void initWordTree() {
+        words = new ArrayList<>();
+        deletes = new HashMap<>();
+    }
+
+    public int getMaxEditDistance() {
+        return maxEditDistance;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    @Override
+    public boolean addNewWord(String str) {
+        if (!wordSet.add(str))
+            return false;
+        int id = words.size();
+        words.add(str);
+        for (String delete : deletesOf(prefix(str), maxEditDistance))
+            addToPosting(delete, id);
+        invalidateCache();
+        return true;
+    }
+
+    @Override
+    public boolean removeWord(String str) {
+        if (!wordSet.remove(str))
+            return false;
+        // the word is in the posting list of its whole prefix
+        int[] posting = deletes.get(prefix(str));
+        for (int i = 1; i <= posting[0]; i++) {
+            if (str.equals(words.get(posting[i])))
+                words.set(posting[i], null);
+        }
+        invalidateCache();
+        return true;
+    }
+
+    private void addToPosting(String delete, int id) {
+        int[] posting = deletes.get(delete);
+        if (posting == null) {
+            posting = new int[2];
+            deletes.put(delete, posting);
+        } else if (posting[0] + 1 == posting.length) {
+            posting = Arrays.copyOf(posting, 2 * posting.length);
+            deletes.put(delete, posting);
+        }
+        posting[++posting[0]] = id;
+    }
+
+    private String prefix(String word) {
+        return word.length() > prefixLength ? word.substring(0, prefixLength) : word;
+    }
+
+    /**
+     * @return The strings obtained by deleting up to maxDeletes chars from the
+     *         string (the string included).
+     */
+    private static Set<String> deletesOf(String str, int maxDeletes) {
+        Set<String> result = new HashSet<>();
+        result.add(str);
+        List<String> level = Collections.singletonList(str);
+        for (int k = 0; k < maxDeletes && !level.isEmpty(); k++) {
+            List<String> next = new ArrayList<>();
+            for (String candidate : level)
+                for (int i = 0; i < candidate.length(); i++) {
+                    String delete = candidate.substring(0, i) + candidate.substring(i + 1);
+                    if (result.add(delete))
+                        next.add(delete);
+                }
+            level = next;
+        }
+        return result;
+    }
+
+    /**
+     * The closest word within the maximum edit distance. The ties are broken
+     * alphabetically.
+     */
+    @Override
+    protected String searchClosestWord(String word, double distance) {
+        if (contains(word))
+            return word;
+        if (distance < 0)
+            return null;
+        Search search = new Search(word, (int) Math.min(distance, maxEditDistance), false);
+        search.run();
+        return search.bestTerm;
+    }
+
+    @Override
+    public List<Match<String>> findAllWithin(String word, double distance) {
+        if (distance < 0)
+            return new ArrayList<>();
+        Search search = new Search(word, (int) Math.min(distance, maxEditDistance), true);
+        search.run();
+        search.matches.sort(Match.byDistanceThenTerm());
+        return search.matches;
+    }
+
+    /**
+     * Only the words within the maximum edit distance can be found.
+     */
+    @Override
+    public List<Match<String>> findClosestWords(String word, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("The number of matches must be positive.");
+        List<Match<String>> matches = findAllWithin(word, maxEditDistance);
+        return matches.size() <= k ? matches : new ArrayList<>(matches.subList(0, k));
+    }
+
+    /**
+     * The state of one query.
+     */
+    private final class Search {
+
+        private final String word;
+        private final int maxDistance;
+        // TRUE to collect all the words within maxDistance
+        private final boolean collectAll;
+        private final Set<Integer> checked = new HashSet<>();
+        private final List<Match<String>> matches = new ArrayList<>();
+        private int bestDistance;
+        private String bestTerm;
+
+        private Search(String word, int maxDistance, boolean collectAll) {
+            this.word = word;
+            this.maxDistance = maxDistance;
+            this.collectAll = collectAll;
+            bestDistance = maxDistance;
+        }
+
+        /**
+         * Looks up the deletes of the prefix of the word, by increasing number
+         * of deletions. A word at distance d shares a delete with at most d
+         * deletions, so we stop once the number of deletions exceeds the best
+         * distance found.
+         */
+        private void run() {
+            String prefix = prefix(word);
+            Set<String> seen = new HashSet<>();
+            seen.add(prefix);
+            List<String> level = Collections.singletonList(prefix);
+            for (int k = 0; k <= maxDistance && !level.isEmpty(); k++) {
+                if (!collectAll && k > bestDistance)
+                    return;
+                List<String> next = new ArrayList<>();
+                for (String candidate : level) {
+                    int[] posting = deletes.get(candidate);
+                    if (posting != null)
+                        for (int i = 1; i <= posting[0]; i++)
+                            check(posting[i]);
+                    if (k < maxDistance) {
+                        for (int i = 0; i < candidate.length(); i++) {
+                            String delete = candidate.substring(0, i) + candidate.substring(i + 1);
+                            if (seen.add(delete))
+                                next.add(delete);
+                        }
+                    }
+                }
+                level = next;
+            }
+        }
+
+        private void check(int id) {
+            if (!checked.add(id))
+                return;
+            String term = words.get(id);
+            if (term == null)
+                return;
+            int limit = collectAll ? maxDistance : bestDistance;
+            if (Math.abs(term.length() - word.length()) > limit)
+                return;
+            int distance = LEVENSHTEIN.getDistanceInt(word, term, limit);
+            if (distance > limit)
+                return;
+
+            if (collectAll)
+                matches.add(new Match<>(term, distance));
+            else if (bestTerm == null || distance < bestDistance || (distance == bestDistance && term.compareTo(bestTerm) < 0)) {
+                bestDistance = distance;
+                bestTerm = term;
+            }
+        }
+    }
+
+}
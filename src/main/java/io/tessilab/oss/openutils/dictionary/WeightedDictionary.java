@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import io.tessilab.oss.openutils.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <b>A dictionary keeping the count of each word.</b>
+ * <p>
+ * The closest word queries break the distance ties with the counts: among the
+ * closest words, the most frequent one is returned. The trie search skips the
+ * subtrees whose words cannot be more frequent than the best word found at the
+ * same distance, so the counts also cut the search short. The counts of the
+ * compiled trie are updated in place, and the words added since its
+ * compilation are searched one by one, so adding occurrences does not compile
+ * the trie again.
+ * <p>
+ * The file format is one word per line, followed by its count ("word count").
+ * Lines without a count are split on whitespace, and each word is counted
+ * once per occurrence.
+ */
+public class WeightedDictionary extends LevenshteinDictionary {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeightedDictionary.class);
+
+    // initialized by initWordTree, as the base constructors already add words
+    private WordCountMap counts;
+    // the weights of the last compiled trie, null before the first query
+    private volatile Weights weights;
+
+    public WeightedDictionary() {
+        super();
+    }
+
+    /**
+     * Import a whole dictionary from a text file.
+     * 
+     * @param path
+     *            The path of the file.
+     */
+    public WeightedDictionary(String path) {
+        super(path);
+    }
+
+    @Override
+    protected void initWordTree() {
+        super.initWordTree();
+        counts = new WordCountMap();
+    }
+
+    @Override
+    protected void initFromFile(String path) {
+        try {
+            List<String> lines = FileUtils.getFileLines(path);
+            for (String line : lines) {
+                String[] splits = line.trim().split("\\s+");
+                if (splits.length == 2 && isCount(splits[1])) {
+                    addNewWord(splits[0], Integer.parseInt(splits[1]));
+                } else {
+                    for (String word : splits)
+                        addNewWord(word);
+                }
+            }
+        } catch (IOException ioe) {
+            LOGGER.error("Exception while loading the dictionary", ioe);
+        }
+    }
+
+    private static boolean isCount(String str) {
+        if (str.isEmpty() || str.length() > 9)
+            return false;
+        for (int i = 0; i < str.length(); i++)
+            if (str.charAt(i) < '0' || str.charAt(i) > '9')
+                return false;
+        return Integer.parseInt(str) > 0;
+    }
+
+    /**
+     * Add one occurrence of a word.
+     * 
+     * @param str
+     *            The word to add.
+     * @return TRUE if the word is new. FALSE if the word already existed (its
+     *         count is increased anyway).
+     */
+    @Override
+    public synchronized boolean addNewWord(String str) {
+        return addNewWord(str, 1);
+    }
+
+    /**
+     * Add several occurrences of a word.
+     * 
+     * @param str
+     *            The word to add.
+     * @param count
+     *            The number of occurrences, positive.
+     * @return TRUE if the word is new. FALSE if the word already existed (its
+     *         count is increased anyway).
+     */
+    public synchronized boolean addNewWord(String str, int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("The count of a word must be positive.");
+        if (str.isEmpty())
+            return false;
+        boolean added = super.addNewWord(str);
+        int newCount = counts.add(str, count);
+        // the words added since the compilation are not in the weights, their
+        // counts are read from the map
+        Weights current = weights;
+        if (current != null)
+            current.raise(str, newCount);
+        // the counts break the ties of the cached queries
+        invalidateCache();
+        return added;
+    }
+
+    @Override
+    public synchronized boolean removeWord(String str) {
+        if (super.removeWord(str)) {
+            // the weights of the compiled trie stay valid: the removed word
+            // cannot be found anymore, and the highest counts of the subtrees
+            // are still upper bounds
+            counts.remove(str);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * @param word
+     *            A word.
+     * @return The number of occurrences of the word, 0 if it is not in the
+     *         dictionary.
+     */
+    public synchronized int getCount(String word) {
+        return counts.get(word);
+    }
+
+    @Override
+    protected String searchClosestWord(String word, double distance) {
+        if (contains(word))
+            return word;
+        else if ((int) distance == 0)
+            return null;
+
+        TrieState current = getSearchedState();
+        Weights currentWeights = getWeights(current.trie);
+        return findClosestWeightedWord(current, word, (int) distance, currentWeights.counts, currentWeights.subtreeMaxCounts, counts);
+    }
+
+    /**
+     * The matches are sorted by increasing distance, then by decreasing count,
+     * then alphabetically.
+     */
+    @Override
+    Comparator<Match<String>> matchOrder() {
+        return Comparator.<Match<String>> comparingDouble(Match::getDistance)
+                .thenComparing(match -> counts.get(match.getTerm()), Comparator.reverseOrder())
+                .thenComparing(Match::getTerm);
+    }
+
+    /**
+     * Write the words and their count in a file, one word per line, sorted.
+     * 
+     * @param path
+     *            The file path.
+     */
+    @Override
+    public synchronized void writeInFile(String path) {
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(path, "UTF-8");
+            for (String word : getTrie().words)
+                if (contains(word))
+                    writer.println(word + " " + counts.get(word));
+        } catch (Exception e) {
+            LOGGER.error("Exception while writing the dictionary in a file", e);
+        } finally {
+            if (writer != null)
+                writer.close();
+        }
+    }
+
+    /**
+     * @return The weights of a compiled trie, computed again only when the
+     *         trie was compiled again.
+     */
+    private Weights getWeights(CompiledTrie compiled) {
+        Weights current = weights;
+        if (current != null && current.trie == compiled)
+            return current;
+        synchronized (this) {
+            if (weights == null || weights.trie != compiled)
+                weights = new Weights(compiled, counts);
+            return weights;
+        }
+    }
+
+    /**
+     * The counts of the words of a compiled trie, indexed like the trie.
+     */
+    private static final class Weights {
+
+        private final CompiledTrie trie;
+        // by word id
+        private final int[] counts;
+        // by node: the highest count of the words below the node
+        private final int[] subtreeMaxCounts;
+
+        private Weights(CompiledTrie trie, WordCountMap countMap) {
+            this.trie = trie;
+            counts = new int[trie.words.length];
+            for (int id = 0; id < counts.length; id++)
+                counts[id] = countMap.get(trie.words[id]);
+
+            // the children have higher numbers than their parent
+            int nbOfNodes = trie.getNbOfNodes();
+            subtreeMaxCounts = new int[nbOfNodes];
+            for (int node = nbOfNodes - 1; node >= 0; node--) {
+                int id = trie.wordIds[node];
+                int max = id == CompiledTrie.NO_WORD ? 0 : counts[id];
+                for (int child = trie.firstChild[node]; child < trie.firstChild[node + 1]; child++)
+                    max = Math.max(max, subtreeMaxCounts[child]);
+                subtreeMaxCounts[node] = max;
+            }
+        }
+
+        /**
+         * Sets the new count of a word of the trie, and raises the highest
+         * counts of the subtrees on its path. Nothing is done for the words
+         * which are not in the trie.
+         */
+        private void raise(String word, int count) {
+            int node = trie.find(word);
+            if (node < 0 || trie.wordIds[node] == CompiledTrie.NO_WORD)
+                return;
+            counts[trie.wordIds[node]] = count;
+            node = 0;
+            subtreeMaxCounts[0] = Math.max(subtreeMaxCounts[0], count);
+            for (int i = 0; i < word.length(); i++) {
+                node = trie.child(node, word.charAt(i));
+                subtreeMaxCounts[node] = Math.max(subtreeMaxCounts[node], count);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+/**
+ * A map from words to positive counts, stored in two parallel arrays with
+ * open addressing (linear probing), so the counts are not boxed.
+ * <p>
+ * Visibility: package
+ */
+final class WordCountMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] counts;
+    private int size;
+
+    WordCountMap() {
+        keys = new String[MIN_CAPACITY];
+        counts = new int[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The count of the word, or 0 if it is not in the map.
+     */
+    int get(String word) {
+        int index = indexOf(word);
+        return keys[index] == null ? 0 : counts[index];
+    }
+
+    /**
+     * Adds a positive amount to the count of a word.
+     * 
+     * @return The new count of the word.
+     */
+    int add(String word, int amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("The count of a word must be positive.");
+        int index = indexOf(word);
+        if (keys[index] != null) {
+            counts[index] = (int) Math.min(Integer.MAX_VALUE, (long) counts[index] + amount);
+            return counts[index];
+        }
+        keys[index] = word;
+        counts[index] = amount;
+        if (++size > keys.length / 2)
+            rehash(keys.length * 2);
+        return amount;
+    }
+
+    /**
+     * @return TRUE if the word was in the map.
+     */
+    boolean remove(String word) {
+        int index = indexOf(word);
+        if (keys[index] == null)
+            return false;
+        keys[index] = null;
+        size--;
+
+        // shift back the following words of the cluster
+        int mask = keys.length - 1;
+        int hole = index;
+        for (int i = (index + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+            int home = slot(keys[i]);
+            // move the word if its home slot is not between the hole and i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                counts[hole] = counts[i];
+                keys[i] = null;
+                hole = i;
+            }
+        }
+        return true;
+    }
+
+    private int slot(String word) {
+        int h = word.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * @return The slot of the word, or the empty slot where it would go.
+     */
+    private int indexOf(String word) {
+        int mask = keys.length - 1;
+        int i = slot(word);
+        while (keys[i] != null && !keys[i].equals(word))
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[capacity];
+        counts = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+}
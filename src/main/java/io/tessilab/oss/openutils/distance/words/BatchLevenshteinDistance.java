@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Levenshtein distances between one query and many candidates.
+ * <p>
+ * The candidates are packed into {@link Candidates}: they are grouped by
+ * length into blocks of {@link #LANES} candidates, whose chars are interleaved
+ * (the j-th chars of the candidates of a block are contiguous). The dynamic
+ * programming then goes over the chars of the query and of the candidates of a
+ * block at the same time, with an innermost loop over the candidates which is
+ * branch-free and works on contiguous arrays, so that the JIT can unroll and
+ * vectorize it. A whole block is skipped when its length is too far from the
+ * length of the query, and its computation stops as soon as all its
+ * candidates are above the maximum distance.
+ * <p>
+ * The columns of the computation are kept in per-thread scratch space, so one
+ * instance can be shared between several threads.
+ */
+public class BatchLevenshteinDistance {
+
+    /**
+     * The number of candidates computed together.
+     */
+    public static final int LANES = 16;
+
+    private static final ThreadLocal<int[][]> SCRATCH_COLUMNS = ThreadLocal.withInitial(() -> new int[2][32 * LANES]);
+
+    /**
+     * Computes the distances between a query and candidates. The candidates
+     * are packed at each call: to compare several queries with the same
+     * candidates, pack them once with {@link Candidates#Candidates(String[])}.
+     * 
+     * @param query
+     *            The query.
+     * @param candidates
+     *            The candidates.
+     * @param max
+     *            The greatest distance we are interested in.
+     * @return The distance between the query and each candidate, or max + 1 if
+     *         it is greater than max.
+     */
+    public int[] distances(String query, String[] candidates, int max) {
+        return distances(query, new Candidates(candidates), max);
+    }
+
+    /**
+     * Computes the distances between a query and packed candidates.
+     * 
+     * @param query
+     *            The query.
+     * @param candidates
+     *            The packed candidates.
+     * @param max
+     *            The greatest distance we are interested in.
+     * @return The distance between the query and each candidate, in the order
+     *         of the candidates, or max + 1 if it is greater than max.
+     */
+    public int[] distances(String query, Candidates candidates, int max) {
+        if (max < 0)
+            throw new IllegalArgumentException("The maximum distance cannot be negative.");
+        int[] distances = new int[candidates.size()];
+        int queryLength = query.length();
+        char[] queryChars = query.toCharArray();
+
+        int columnSize = (queryLength + 1) * LANES;
+        int[][] columns = SCRATCH_COLUMNS.get();
+        if (columns[0].length < columnSize) {
+            columns = new int[2][Math.max(columnSize, 2 * columns[0].length)];
+            SCRATCH_COLUMNS.set(columns);
+        }
+
+        int[] lanes = new int[LANES];
+        for (int block = 0; block < candidates.nbBlocks(); block++) {
+            int length = candidates.blockLength[block];
+            if (Math.abs(length - queryLength) > max) {
+                setBlock(distances, candidates, block, max + 1);
+                continue;
+            }
+            computeBlock(queryChars, candidates.chars, candidates.blockOffset[block], length, max, columns, lanes);
+            for (int lane = 0; lane < LANES; lane++) {
+                int index = candidates.blockIndexes[block * LANES + lane];
+                if (index >= 0)
+                    distances[index] = Math.min(lanes[lane], max + 1);
+            }
+        }
+        return distances;
+    }
+
+    private static void setBlock(int[] distances, Candidates candidates, int block, int value) {
+        for (int lane = 0; lane < LANES; lane++) {
+            int index = candidates.blockIndexes[block * LANES + lane];
+            if (index >= 0)
+                distances[index] = value;
+        }
+    }
+
+    /**
+     * Computes the distances between the query and the candidates of a
+     * block, one column (one char of the candidates) at a time. The cell i of
+     * the column of a lane is at i * LANES + lane.
+     */
+    private static void computeBlock(char[] query, char[] chars, int offset, int length, int max, int[][] columns, int[] result) {
+        int queryLength = query.length;
+        int[] previous = columns[0];
+        int[] current = columns[1];
+        for (int i = 0; i <= queryLength; i++)
+            Arrays.fill(previous, i * LANES, (i + 1) * LANES, i);
+
+        for (int j = 1; j <= length; j++) {
+            int charsOffset = offset + (j - 1) * LANES;
+            Arrays.fill(current, 0, LANES, j);
+            int columnMin = j;
+            for (int i = 1; i <= queryLength; i++) {
+                char queryChar = query[i - 1];
+                int cell = i * LANES;
+                int up = cell - LANES;
+                for (int lane = 0; lane < LANES; lane++) {
+                    int cost = chars[charsOffset + lane] == queryChar ? 0 : 1;
+                    int value = Math.min(previous[up + lane] + cost, Math.min(previous[cell + lane], current[up + lane]) + 1);
+                    current[cell + lane] = value;
+                }
+                for (int lane = 0; lane < LANES; lane++)
+                    columnMin = Math.min(columnMin, current[cell + lane]);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+            // the minimum of a column never decreases from a column to the next
+            if (columnMin > max) {
+                Arrays.fill(result, max + 1);
+                return;
+            }
+        }
+        System.arraycopy(previous, queryLength * LANES, result, 0, LANES);
+    }
+
+    /**
+     * Candidates packed for {@link BatchLevenshteinDistance}: grouped by
+     * length into blocks of {@link BatchLevenshteinDistance#LANES}
+     * candidates, with interleaved chars. The incomplete blocks are padded
+     * with empty lanes.
+     */
+    public static final class Candidates {
+
+        private final int size;
+        private final int[] blockLength;
+        private final int[] blockOffset;
+        // the index of the candidate of each lane of each block, -1 for padding
+        private final int[] blockIndexes;
+        private final char[] chars;
+
+        /**
+         * @param candidates
+         *            The candidates to pack.
+         */
+        public Candidates(String[] candidates) {
+            size = candidates.length;
+            for (String candidate : candidates) {
+                if (candidate == null)
+                    throw new IllegalArgumentException("The candidates cannot be null.");
+            }
+            int[] order = IntStream.range(0, size).boxed().sorted(Comparator.comparingInt(index -> candidates[index].length()))
+                    .mapToInt(Integer::intValue).toArray();
+
+            int nbBlocks = 0;
+            int nbChars = 0;
+            for (int start = 0; start < size;) {
+                int length = candidates[order[start]].length();
+                int end = start;
+                while (end < size && end - start < LANES && candidates[order[end]].length() == length)
+                    end++;
+                nbBlocks++;
+                nbChars += length * LANES;
+                start = end;
+            }
+
+            blockLength = new int[nbBlocks];
+            blockOffset = new int[nbBlocks];
+            blockIndexes = new int[nbBlocks * LANES];
+            chars = new char[nbChars];
+            Arrays.fill(blockIndexes, -1);
+            int block = 0;
+            int offset = 0;
+            for (int start = 0; start < size; block++) {
+                int length = candidates[order[start]].length();
+                blockLength[block] = length;
+                blockOffset[block] = offset;
+                for (int lane = 0; lane < LANES && start < size && candidates[order[start]].length() == length; lane++, start++) {
+                    blockIndexes[block * LANES + lane] = order[start];
+                    String candidate = candidates[order[start]];
+                    for (int j = 0; j < length; j++)
+                        chars[offset + j * LANES + lane] = candidate.charAt(j);
+                }
+                offset += length * LANES;
+            }
+        }
+
+        /**
+         * @return The number of candidates.
+         */
+        public int size() {
+            return size;
+        }
+
+        int nbBlocks() {
+            return blockLength.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>The edit costs of a {@link WeightedLevenshteinDistance}</b>: the cost of
+ * substituting a char by another one, the cost of inserting or deleting a
+ * char, and rules rewriting a sequence of chars into another one (such as "rn"
+ * into "m").
+ * <p>
+ * The costs of the chars below {@link #DENSE_LIMIT} (the Latin chars of the
+ * BMP) are kept in dense arrays, the others in maps. All the costs are
+ * symmetric and between {@link #MIN_COST} and 1 (the default cost), so that no
+ * edit is free and no edit is cheaper as a combination of two others: without
+ * rules, the distance is a metric, as needed by {@code BKTree}. The rules break
+ * the triangle inequality (with "cl" to "d", "cl" is closer to "a" through
+ * "d" than directly), so a table with rules is only meant for the trie search
+ * of {@code LevenshteinDictionary}.
+ * <p>
+ * The table must not be modified while a distance uses it.
+ */
+public final class ConfusionTable {
+
+    /**
+     * The chars below this limit have their costs in dense arrays.
+     */
+    public static final int DENSE_LIMIT = 0x180;
+
+    public static final double MIN_COST = 0.5;
+    public static final double DEFAULT_COST = 1;
+
+    /**
+     * The maximum length of each side of a rule.
+     */
+    public static final int MAX_RULE_LENGTH = 2;
+
+    private final float[] substitutions = new float[DENSE_LIMIT * DENSE_LIMIT];
+    private final float[] indels = new float[DENSE_LIMIT];
+    private final Map<Integer, Float> otherSubstitutions = new HashMap<>();
+    private final Map<Character, Float> otherIndels = new HashMap<>();
+
+    // the rules, in both directions
+    private final List<char[]> ruleFrom = new ArrayList<>();
+    private final List<char[]> ruleTo = new ArrayList<>();
+    private final List<Float> ruleCosts = new ArrayList<>();
+    // the ids of the rules whose "from" side ends with each char
+    private final Map<Character, int[]> rulesByLastChar = new HashMap<>();
+
+    /**
+     * A table where all the edits cost 1.
+     */
+    public ConfusionTable() {
+        Arrays.fill(substitutions, (float) DEFAULT_COST);
+        for (int c = 0; c < DENSE_LIMIT; c++)
+            substitutions[c * DENSE_LIMIT + c] = 0;
+        Arrays.fill(indels, (float) DEFAULT_COST);
+    }
+
+    /**
+     * @return A table with cheaper costs for the usual OCR confusions of chars
+     *         (0/O, 1/l/I, 5/S...), without rules.
+     */
+    public static ConfusionTable ocr() {
+        ConfusionTable table = new ConfusionTable();
+        String[][] substitutions = { { "0", "O" }, { "0", "o" }, { "O", "o" }, { "O", "Q" }, { "0", "D" }, { "1", "l" }, { "1", "I" }, { "l", "I" },
+                { "1", "i" }, { "l", "i" }, { "5", "S" }, { "5", "s" }, { "8", "B" }, { "2", "Z" }, { "6", "G" }, { "6", "b" }, { "9", "g" },
+                { "u", "v" }, { "c", "e" }, { "n", "h" }, { "e", "\u00e9" }, { "e", "\u00e8" }, { "a", "\u00e0" } };
+        for (String[] pair : substitutions)
+            table.setSubstitutionCost(pair[0].charAt(0), pair[1].charAt(0), MIN_COST);
+        for (char c : new char[] { '.', ',', '\'', '`', '-' })
+            table.setIndelCost(c, MIN_COST);
+        return table;
+    }
+
+    /**
+     * @return The table of {@link #ocr()}, with rules for the usual OCR
+     *         confusions of sequences of chars (rn/m, cl/d...).
+     */
+    public static ConfusionTable ocrWithRules() {
+        ConfusionTable table = ocr();
+        table.addRule("rn", "m", MIN_COST);
+        table.addRule("cl", "d", MIN_COST);
+        table.addRule("vv", "w", MIN_COST);
+        table.addRule("ri", "n", MIN_COST);
+        table.addRule("li", "h", MIN_COST);
+        return table;
+    }
+
+    private static float checkCost(double cost) {
+        if (!(cost >= MIN_COST && cost <= DEFAULT_COST))
+            throw new IllegalArgumentException("The costs must be between " + MIN_COST + " and " + DEFAULT_COST + ".");
+        return (float) cost;
+    }
+
+    /**
+     * Set the cost of substituting a char by another one (in both directions).
+     */
+    public void setSubstitutionCost(char c1, char c2, double cost) {
+        if (c1 == c2)
+            throw new IllegalArgumentException("A char is not substituted by itself.");
+        float value = checkCost(cost);
+        if (c1 < DENSE_LIMIT && c2 < DENSE_LIMIT) {
+            substitutions[c1 * DENSE_LIMIT + c2] = value;
+            substitutions[c2 * DENSE_LIMIT + c1] = value;
+        } else {
+            otherSubstitutions.put(c1 << 16 | c2, value);
+            otherSubstitutions.put(c2 << 16 | c1, value);
+        }
+    }
+
+    /**
+     * Set the cost of inserting or deleting a char.
+     */
+    public void setIndelCost(char c, double cost) {
+        float value = checkCost(cost);
+        if (c < DENSE_LIMIT)
+            indels[c] = value;
+        else
+            otherIndels.put(c, value);
+    }
+
+    /**
+     * Add a rule rewriting a sequence of chars into another one, and the
+     * reverse rule, with the same cost.
+     * 
+     * @param from
+     *            A sequence of 1 to {@link #MAX_RULE_LENGTH} chars.
+     * @param to
+     *            Another sequence of 1 to {@link #MAX_RULE_LENGTH} chars. One
+     *            of the sequences has several chars (otherwise it is a
+     *            substitution).
+     * @param cost
+     *            The cost of the rewriting.
+     */
+    public void addRule(String from, String to, double cost) {
+        if (from.isEmpty() || to.isEmpty() || from.length() > MAX_RULE_LENGTH || to.length() > MAX_RULE_LENGTH)
+            throw new IllegalArgumentException("The sides of a rule must have 1 to " + MAX_RULE_LENGTH + " chars.");
+        if (from.length() == 1 && to.length() == 1)
+            throw new IllegalArgumentException("A rule between two chars is a substitution.");
+        float value = checkCost(cost);
+        addOneWayRule(from, to, value);
+        addOneWayRule(to, from, value);
+    }
+
+    private void addOneWayRule(String from, String to, float cost) {
+        int id = ruleFrom.size();
+        ruleFrom.add(from.toCharArray());
+        ruleTo.add(to.toCharArray());
+        ruleCosts.add(cost);
+        char last = from.charAt(from.length() - 1);
+        int[] ids = rulesByLastChar.get(last);
+        ids = ids == null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+        ids[ids.length - 1] = id;
+        rulesByLastChar.put(last, ids);
+    }
+
+    /**
+     * @return The cost of substituting c1 by c2 (0 if they are equal).
+     */
+    public double substitutionCost(char c1, char c2) {
+        if (c1 < DENSE_LIMIT && c2 < DENSE_LIMIT)
+            return substitutions[c1 * DENSE_LIMIT + c2];
+        if (c1 == c2)
+            return 0;
+        Float cost = otherSubstitutions.get(c1 << 16 | c2);
+        return cost == null ? DEFAULT_COST : cost;
+    }
+
+    /**
+     * @return The cost of inserting or deleting the char.
+     */
+    public double indelCost(char c) {
+        if (c < DENSE_LIMIT)
+            return indels[c];
+        Float cost = otherIndels.get(c);
+        return cost == null ? DEFAULT_COST : cost;
+    }
+
+    /**
+     * @return TRUE if the table has rules.
+     */
+    public boolean hasRules() {
+        return !ruleFrom.isEmpty();
+    }
+
+    /**
+     * @return TRUE if the distance is a metric (the table has no rules).
+     */
+    public boolean isMetric() {
+        return !hasRules();
+    }
+
+    // -------Access for the distance (no bound checks)
+
+    float[] denseSubstitutions() {
+        return substitutions;
+    }
+
+    float[] denseIndels() {
+        return indels;
+    }
+
+    /**
+     * @return The ids of the rules whose "from" side ends with the char, or
+     *         null.
+     */
+    int[] rulesEndingWith(char c) {
+        return rulesByLastChar.get(c);
+    }
+
+    char[] ruleFrom(int id) {
+        return ruleFrom.get(id);
+    }
+
+    char[] ruleTo(int id) {
+        return ruleTo.get(id);
+    }
+
+    float ruleCost(int id) {
+        return ruleCosts.get(id);
+    }
+
+}
@@ -17,9 +17,23 @@ package io.tessilab.oss.openutils.distance.words;
 
 import io.tessilab.oss.openutils.MyTolerantMath;
 
+import java.util.Arrays;
 
+/**
+ * The Jaro similarity between two strings: 1 for equal strings, 0 for strings
+ * without any common char.
+ * <p>
+ * The marks of the matched chars are kept in per-thread buffers reused from a
+ * call to another, so one instance can be shared between several threads.
+ * {@link #getDistance(String, String, double)} takes a minimum similarity and
+ * gives up as soon as the pair cannot reach it.
+ * 
+ * @see JaroWinklerDistance
+ */
 public class JaroDistance implements Distance<String> {
 
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private MyTolerantMath tolMath;
 	
     public JaroDistance(double tolerance) {
@@ -28,16 +42,50 @@ public class JaroDistance implements Distance<String> {
 
 	@Override
 	public double getDistance(String string1, String string2) {
+		return jaro(string1, string2, 0);
+	}
+
+	/**
+	 * @param string1
+	 *            The first string
+	 * @param string2
+	 *            The second string
+	 * @param minSimilarity
+	 *            The minimum similarity of interest
+	 * @return The similarity of the two strings, or 0 if it is lower than
+	 *         minSimilarity
+	 */
+	public double getDistance(String string1, String string2, double minSimilarity) {
+		double similarity = jaro(string1, string2, minSimilarity);
+		return similarity < minSimilarity ? 0 : similarity;
+	}
+
+	/**
+	 * Computes the Jaro similarity, stopping as soon as it cannot reach
+	 * minSimilarity.
+	 * 
+	 * @return The similarity, or 0 if it is lower than minSimilarity
+	 */
+	protected double jaro(String string1, String string2, double minSimilarity) {
 		int string1_len = string1.length();
 		int string2_len = string2.length();
 
 		if (string1_len == 0 && string2_len == 0)
 			return 1;
 
+		// the similarity is (m / l1 + m / l2 + (m - t / 2) / m) / 3 with m
+		// matches and t transpositions: it needs at least requiredMatches
+		// matches, even without transposition
+		double requiredMatches = (3 * minSimilarity - 1) / (1.0 / string1_len + 1.0 / string2_len) - 1e-9;
+		if (requiredMatches > Integer.min(string1_len, string2_len))
+			return 0;
+
 		int match_distance = Integer.max(string1_len, string2_len) / 2 - 1;
 
-		boolean[] string1_matches = new boolean[string1_len];
-		boolean[] string2_matches = new boolean[string2_len];
+		Scratch scratch = SCRATCH.get();
+		int stamp = scratch.next(string1_len, string2_len);
+		int[] string1_matches = scratch.marks1;
+		int[] string2_matches = scratch.marks2;
 
 		int matches = 0;
 		int transpositions = 0;
@@ -47,15 +95,17 @@ public class JaroDistance implements Distance<String> {
 			int end = Integer.min(i + match_distance + 1, string2_len);
 
 			for (int j = start; j < end; ++j) {
-				if (string2_matches[j])
+				if (string2_matches[j] == stamp)
 					continue;
 				if (string1.charAt(i) != string2.charAt(j))
 					continue;
-				string1_matches[i] = true;
-				string2_matches[j] = true;
+				string1_matches[i] = stamp;
+				string2_matches[j] = stamp;
 				++matches;
 				break;
 			}
+			if (matches + string1_len - i - 1 < requiredMatches)
+				return 0;
 		}
 
 		if (matches == 0)
@@ -63,9 +113,9 @@ public class JaroDistance implements Distance<String> {
 
 		int k = 0;
 		for (int i = 0; i < string1_len; i++) {
-			if (!string1_matches[i])
+			if (string1_matches[i] != stamp)
 				continue;
-			while (!string2_matches[k])
+			while (string2_matches[k] != stamp)
 				++k;
 			if (string1.charAt(i) != string2.charAt(k))
 				transpositions++;
@@ -81,4 +131,29 @@ public class JaroDistance implements Distance<String> {
         return tolMath.tolCompare(d, 1.0) <= maxDistanceAuthorized;
     }
 	
+	/**
+	 * The marks of the matched chars of a thread. A char is matched if its
+	 * mark is the stamp of the current call, so the buffers never need to be
+	 * cleared.
+	 */
+	private static final class Scratch {
+
+		private int[] marks1 = new int[32];
+		private int[] marks2 = new int[32];
+		private int stamp;
+
+		private int next(int length1, int length2) {
+			if (marks1.length < length1)
+				marks1 = new int[Integer.max(length1, 2 * marks1.length)];
+			if (marks2.length < length2)
+				marks2 = new int[Integer.max(length2, 2 * marks2.length)];
+			if (++stamp == Integer.MAX_VALUE) {
+				Arrays.fill(marks1, 0);
+				Arrays.fill(marks2, 0);
+				stamp = 1;
+			}
+			return stamp;
+		}
+	}
+
 }
\ No newline at end of file
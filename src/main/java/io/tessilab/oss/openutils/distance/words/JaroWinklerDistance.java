@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+/**
+ * The Jaro-Winkler similarity: the Jaro similarity, boosted for the strings
+ * sharing a prefix of up to {@link #MAX_PREFIX} chars when it is above
+ * {@link #BOOST_THRESHOLD}.
+ */
+public class JaroWinklerDistance extends JaroDistance {
+
+	public static final int MAX_PREFIX = 4;
+	public static final double BOOST_THRESHOLD = 0.7;
+	public static final double DEFAULT_PREFIX_SCALE = 0.1;
+
+	private final double prefixScale;
+
+	public JaroWinklerDistance(double tolerance) {
+		this(tolerance, DEFAULT_PREFIX_SCALE);
+	}
+
+	/**
+	 * @param tolerance
+	 *            The tolerance of the comparisons
+	 * @param prefixScale
+	 *            The boost for each char of the common prefix, between 0 and
+	 *            1 / {@link #MAX_PREFIX}
+	 */
+	public JaroWinklerDistance(double tolerance, double prefixScale) {
+		super(tolerance);
+		if (prefixScale < 0 || prefixScale * MAX_PREFIX > 1)
+			throw new IllegalArgumentException("The prefix scale must be between 0 and " + (1.0 / MAX_PREFIX) + ": " + prefixScale);
+		this.prefixScale = prefixScale;
+	}
+
+	public double getPrefixScale() {
+		return prefixScale;
+	}
+
+	@Override
+	public double getDistance(String string1, String string2) {
+		return getDistance(string1, string2, 0);
+	}
+
+	@Override
+	public double getDistance(String string1, String string2, double minSimilarity) {
+		int limit = Integer.min(MAX_PREFIX, Integer.min(string1.length(), string2.length()));
+		int prefix = 0;
+		while (prefix < limit && string1.charAt(prefix) == string2.charAt(prefix))
+			prefix++;
+		double boost = prefix * prefixScale;
+
+		// the boosted similarity j + boost * (1 - j) reaches minSimilarity
+		// only if j reaches (minSimilarity - boost) / (1 - boost)
+		double minJaro = boost < 1 ? Double.min(minSimilarity, (minSimilarity - boost) / (1 - boost)) : 0;
+		double similarity = jaro(string1, string2, minJaro);
+		if (similarity > BOOST_THRESHOLD)
+			similarity += boost * (1 - similarity);
+		return similarity < minSimilarity ? 0 : similarity;
+	}
+
+}
@@ -20,12 +20,17 @@ import io.tessilab.oss.openutils.MyTolerantMath;
 
 /**
  * http://en.wikipedia.org/wiki/Levenshtein_distance
+ * <p>
+ * The distance is computed with two rolling rows kept in a per-thread scratch
+ * space, so one instance can be shared between several threads and no matrix
+ * is allocated per call.
  */
 public class LevenshteinDistance implements IntDistance<String> {
 
-    private static int CACHE_SIZE = 30;
+    private static final int INITIAL_ROW_SIZE = 32;
+    private static final ThreadLocal<int[][]> SCRATCH_ROWS = ThreadLocal.withInitial(() -> new int[2][INITIAL_ROW_SIZE]);
+
     private MyTolerantMath tolMath;
-    private int[][] cache = new int[CACHE_SIZE][CACHE_SIZE];
 
     public LevenshteinDistance(double tolerance) {
         tolMath = new MyTolerantMath(tolerance);
@@ -42,69 +47,126 @@ public class LevenshteinDistance implements IntDistance<String> {
 
     @Override
     public int getDistanceInt(String string1, String string2) {
+        return getDistanceInt(string1, string2, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Bounded version of the distance: the computation stops as soon as the
+     * distance is known to be greater than <b>maxDistance</b>.
+     * 
+     * @param string1
+     *            The first string.
+     * @param string2
+     *            The second string.
+     * @param maxDistance
+     *            The greatest distance we are interested in.
+     * @return The distance between the two strings, or maxDistance + 1 if it
+     *         is greater than maxDistance.
+     */
+    public int getDistanceInt(String string1, String string2, int maxDistance) {
+        int rowSize = Math.min(string1.length(), string2.length()) + 1;
+        int[][] rows = SCRATCH_ROWS.get();
+        if (rows[0].length < rowSize) {
+            rows = new int[2][Math.max(rowSize, 2 * rows[0].length)];
+            SCRATCH_ROWS.set(rows);
+        }
+        return boundedDistance(string1, string2, maxDistance, rows[0], rows[1]);
+    }
+
+    /**
+     * Computes the bounded distance between two sequences in caller-supplied
+     * scratch rows. Only the cells of the diagonal band of width
+     * 2*maxDistance+1 are computed, and we give up as soon as a whole row is
+     * above maxDistance.
+     * 
+     * @param string1
+     *            The first sequence.
+     * @param string2
+     *            The second sequence.
+     * @param maxDistance
+     *            The greatest distance we are interested in.
+     * @param row1
+     *            A scratch row, of size at least min(length1, length2) + 1.
+     * @param row2
+     *            Another scratch row, of the same size.
+     * @return The distance between the two sequences, or maxDistance + 1 if it
+     *         is greater than maxDistance.
+     */
+    public static int boundedDistance(CharSequence string1, CharSequence string2, int maxDistance, int[] row1, int[] row2) {
+        if (maxDistance < 0)
+            throw new IllegalArgumentException("The maximum distance cannot be negative.");
+
+        // We iterate over the longest sequence, the rows follow the shortest
+        CharSequence rowString = string1;
+        CharSequence colString = string2;
+        if (string1.length() < string2.length()) {
+            rowString = string2;
+            colString = string1;
+        }
+        int n = rowString.length();
+        int m = colString.length();
 
-        int n; // length of first string
-        int m; // length of second string
-        int i; // iterates through first string
-        int j; // iterates through second string
-        char si; // ith character of first string
-        char tj; // jth character of second string
-        int cost; // cost
-        int[][] distance;
-
-        // Step 1
-        n = string1.length();
-        m = string2.length();
-        if (n == 0)
-            return m;
+        if (n - m > maxDistance)
+            return maxDistance + 1;
         if (m == 0)
             return n;
-        if (CACHE_SIZE <= n || CACHE_SIZE <= m)
-            distance = new int[n + 1][m + 1];
-        else
-            distance = cache;
-
-        // Step 2
-        for (i = 0; i <= n; i++)
-            distance[i][0] = i;
-        for (j = 0; j <= m; j++)
-            distance[0][j] = j;
-
-        // Step 3
-        for (i = 1; i <= n; i++) {
-            si = string1.charAt(i - 1);
-
-            // Step 4
-            for (j = 1; j <= m; j++) {
-                tj = string2.charAt(j - 1);
-
-                // Step 5
-                if (si == tj)
-                    cost = 0;
-                else
-                    cost = 1;
-
-                // Step 6
-                // distance[i][j] = findMinimum(distance[i - 1][j] + 1,
-                // distance[i][j - 1] + 1, distance[i - 1][j - 1] + cost);
-                int min = distance[i - 1][j - 1] + cost;
-                int c = distance[i - 1][j] + 1;
-                int b = distance[i][j - 1] + 1;
+
+        // the distance is never above n, no need to look further
+        int max = Math.min(maxDistance, n);
+        int outside = max + 1;
+
+        int[] previousRow = row1;
+        int[] currentRow = row2;
+        for (int j = 0; j <= m; j++)
+            previousRow[j] = j <= max ? j : outside;
+
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            char si = rowString.charAt(i - 1);
+
+            int rowMin;
+            if (from == 1)
+                rowMin = currentRow[0] = i <= max ? i : outside;
+            else
+                rowMin = currentRow[from - 1] = outside;
+
+            for (int j = from; j <= to; j++) {
+                int min = previousRow[j - 1];
+                if (si != colString.charAt(j - 1))
+                    min++;
+                int b = currentRow[j - 1] + 1;
+                int c = previousRow[j] + 1;
                 if (b < min)
                     min = b;
                 if (c < min)
                     min = c;
-                distance[i][j] = min;
-
+                if (min > outside)
+                    min = outside;
+                currentRow[j] = min;
+                if (min < rowMin)
+                    rowMin = min;
             }
+            if (to < m)
+                currentRow[to + 1] = outside;
+
+            if (rowMin > max)
+                return maxDistance + 1;
+
+            int[] temp = previousRow;
+            previousRow = currentRow;
+            currentRow = temp;
         }
 
-        // Step 7
-        return distance[n][m];
+        int distance = previousRow[m];
+        return distance > max ? maxDistance + 1 : distance;
     }
 
     public boolean isCloseEnough(String string1, String string2, double maxDistanceAuthorized) {
-        double d = getDistance(string1, string2);
+        double bound = Math.floor(maxDistanceAuthorized + tolMath.getTolerance());
+        if (bound < 0)
+            return false;
+        double d = bound < Integer.MAX_VALUE ? getDistanceInt(string1, string2, (int) bound) : getDistance(string1, string2);
         return tolMath.tolCompare(d, maxDistanceAuthorized) <= 0;
     }
 
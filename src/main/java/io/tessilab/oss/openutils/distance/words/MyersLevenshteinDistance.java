@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein distance computed with the bit-vector algorithm of Myers, in the
+ * formulation of Hyyrö ("Explaining and extending the bit-parallel approximate
+ * string matching algorithm of Myers", 2001).
+ * <p>
+ * The shortest string is encoded in bit vectors: a single long when it has at
+ * most 64 characters, several blocks of 64 characters otherwise. The distance
+ * is then computed in O(n) word operations for short strings, instead of the
+ * O(n*m) cells of the dynamic programming of {@link LevenshteinDistance}. It
+ * gives exactly the same results.
+ * <p>
+ * The scratch tables are kept per thread, an instance can be shared.
+ */
+public class MyersLevenshteinDistance implements IntDistance<String> {
+
+    private static final int WORD_SIZE = 64;
+    // the characters below this limit have their masks in a dense table
+    private static final int TABLE_SIZE = 256;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    public double getDistance(String string1, String string2) {
+        return getDistanceInt(string1, string2);
+    }
+
+    @Override
+    public int getDistanceInt(String string1, String string2) {
+        // The pattern (encoded in the bit vectors) is the shortest string
+        String pattern = string1;
+        String text = string2;
+        if (string1.length() > string2.length()) {
+            pattern = string2;
+            text = string1;
+        }
+        if (pattern.isEmpty())
+            return text.length();
+
+        Scratch scratch = SCRATCH.get();
+        if (pattern.length() <= WORD_SIZE)
+            return singleWordDistance(pattern, text, scratch);
+        else
+            return blockDistance(pattern, text, scratch);
+    }
+
+    private static int singleWordDistance(String pattern, String text, Scratch scratch) {
+        int m = pattern.length();
+        scratch.encode(pattern, 1);
+
+        long pv = -1L;
+        long mv = 0L;
+        long last = 1L << (m - 1);
+        int score = m;
+        for (int j = 0; j < text.length(); j++) {
+            long eq = scratch.mask(text.charAt(j), 0, 1);
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0)
+                score++;
+            else if ((mh & last) != 0)
+                score--;
+            // the first row of the matrix always increases
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+
+        scratch.clear(pattern, 1);
+        return score;
+    }
+
+    private static int blockDistance(String pattern, String text, Scratch scratch) {
+        int m = pattern.length();
+        int blocks = (m + WORD_SIZE - 1) / WORD_SIZE;
+        scratch.encode(pattern, blocks);
+
+        long[] pv = scratch.verticalPositives(blocks);
+        long[] mv = scratch.verticalNegatives(blocks);
+        Arrays.fill(pv, 0, blocks, -1L);
+        Arrays.fill(mv, 0, blocks, 0L);
+
+        long last = 1L << ((m - 1) % WORD_SIZE);
+        int score = m;
+        for (int j = 0; j < text.length(); j++) {
+            char c = text.charAt(j);
+            // horizontal delta entering the block from the row above
+            int hin = 1;
+            for (int b = 0; b < blocks; b++) {
+                long eq = scratch.mask(c, b, blocks);
+                long pvb = pv[b];
+                long mvb = mv[b];
+
+                long xv = eq | mvb;
+                if (hin < 0)
+                    eq |= 1L;
+                long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+                long ph = mvb | ~(xh | pvb);
+                long mh = pvb & xh;
+
+                long high = b == blocks - 1 ? last : Long.MIN_VALUE;
+                int hout = 0;
+                if ((ph & high) != 0)
+                    hout = 1;
+                else if ((mh & high) != 0)
+                    hout = -1;
+
+                ph <<= 1;
+                mh <<= 1;
+                if (hin < 0)
+                    mh |= 1L;
+                else if (hin > 0)
+                    ph |= 1L;
+                pv[b] = mh | ~(xv | ph);
+                mv[b] = ph & xv;
+                hin = hout;
+            }
+            score += hin;
+        }
+
+        scratch.clear(pattern, blocks);
+        return score;
+    }
+
+    /**
+     * The match masks of the pattern and the vertical deltas. The table is
+     * entirely zero between two calls.
+     */
+    private static final class Scratch {
+
+        private long[] table = new long[TABLE_SIZE];
+        private char[] extraChars = new char[8];
+        private long[] extraMasks = new long[8];
+        private int extraCount = 0;
+        private long[] pv = new long[2];
+        private long[] mv = new long[2];
+
+        private void encode(String pattern, int blocks) {
+            if (table.length < TABLE_SIZE * blocks)
+                table = new long[TABLE_SIZE * blocks];
+            extraCount = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                int block = i / WORD_SIZE;
+                long bit = 1L << (i % WORD_SIZE);
+                if (c < TABLE_SIZE) {
+                    table[c * blocks + block] |= bit;
+                } else {
+                    int index = extraIndex(c);
+                    if (index < 0)
+                        index = addExtraChar(c, blocks);
+                    extraMasks[index * blocks + block] |= bit;
+                }
+            }
+        }
+
+        private long mask(char c, int block, int blocks) {
+            if (c < TABLE_SIZE)
+                return table[c * blocks + block];
+            int index = extraIndex(c);
+            return index < 0 ? 0L : extraMasks[index * blocks + block];
+        }
+
+        private int extraIndex(char c) {
+            for (int k = 0; k < extraCount; k++) {
+                if (extraChars[k] == c)
+                    return k;
+            }
+            return -1;
+        }
+
+        private int addExtraChar(char c, int blocks) {
+            int index = extraCount++;
+            if (extraChars.length < extraCount)
+                extraChars = Arrays.copyOf(extraChars, 2 * extraCount);
+            if (extraMasks.length < extraCount * blocks)
+                extraMasks = Arrays.copyOf(extraMasks, 2 * extraCount * blocks);
+            extraChars[index] = c;
+            Arrays.fill(extraMasks, index * blocks, (index + 1) * blocks, 0L);
+            return index;
+        }
+
+        private void clear(String pattern, int blocks) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < TABLE_SIZE)
+                    Arrays.fill(table, c * blocks, (c + 1) * blocks, 0L);
+            }
+            extraCount = 0;
+        }
+
+        private long[] verticalPositives(int blocks) {
+            if (pv.length < blocks)
+                pv = new long[blocks];
+            return pv;
+        }
+
+        private long[] verticalNegatives(int blocks) {
+            if (mv.length < blocks)
+                mv = new long[blocks];
+            return mv;
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+/**
+ * <b>A Levenshtein distance whose edit costs come from a
+ * {@link ConfusionTable}.</b>
+ * <p>
+ * The rows of the matrix are computed one at a time by
+ * {@link #nextRow(char[], int, double[][], char[], int)}, so that a
+ * trie search can compute the rows of the words while walking down the trie.
+ * The matrix of {@link #getDistance(String, String)} is kept in a per-thread
+ * scratch space, so one instance can be shared between several threads.
+ * <p>
+ * The distance can be used in a {@code BKTree} only if its table
+ * {@link ConfusionTable#isMetric() is a metric}.
+ */
+public class WeightedLevenshteinDistance implements Distance<String> {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final ConfusionTable table;
+
+    public WeightedLevenshteinDistance(ConfusionTable table) {
+        this.table = table;
+    }
+
+    public ConfusionTable getTable() {
+        return table;
+    }
+
+    @Override
+    public double getDistance(String string1, String string2) {
+        return getDistance(string1, string2, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Bounded version of the distance: the computation stops as soon as the
+     * distance is known to be greater than <b>maxDistance</b>.
+     * 
+     * @return The distance between the two strings, or a value greater than
+     *         maxDistance.
+     */
+    public double getDistance(String string1, String string2, double maxDistance) {
+        Scratch scratch = SCRATCH.get();
+        int nbRows = string1.length();
+        int nbColumns = string2.length();
+        scratch.ensureCapacity(nbRows, nbColumns);
+        string1.getChars(0, nbRows, scratch.rowChars, 0);
+        string2.getChars(0, nbColumns, scratch.columns, 0);
+
+        double[][] rows = scratch.rows;
+        double[] rowMins = scratch.rowMins;
+        rowMins[0] = firstRow(scratch.columns, nbColumns, rows[0]);
+        for (int i = 1; i <= nbRows; i++) {
+            rowMins[i] = nextRow(scratch.rowChars, i, rows, scratch.columns, nbColumns);
+            double lowerBound = lowerBound(rowMins, i);
+            if (lowerBound > maxDistance)
+                return lowerBound;
+        }
+        return rows[nbRows][nbColumns];
+    }
+
+    /**
+     * Fills the first row of the matrix (nothing read on the rows side).
+     * 
+     * @param columns
+     *            The chars of the columns.
+     * @param nbColumns
+     *            The number of chars of the columns.
+     * @param row
+     *            The row to fill, of size at least nbColumns + 1.
+     * @return The minimum of the row (0).
+     */
+    public double firstRow(char[] columns, int nbColumns, double[] row) {
+        row[0] = 0;
+        for (int j = 1; j <= nbColumns; j++)
+            row[j] = row[j - 1] + table.indelCost(columns[j - 1]);
+        return 0;
+    }
+
+    /**
+     * Fills a row of the matrix from the previous ones.
+     * 
+     * @param rowChars
+     *            The chars read on the rows side.
+     * @param i
+     *            The index of the row to fill (at least 1): rowChars[i - 1] is
+     *            the last char read.
+     * @param rows
+     *            The rows of the matrix, rows[k] being the row after reading k
+     *            chars. The rows before i are already filled.
+     * @param columns
+     *            The chars of the columns.
+     * @param nbColumns
+     *            The number of chars of the columns.
+     * @return The minimum of the row.
+     */
+    public double nextRow(char[] rowChars, int i, double[][] rows, char[] columns, int nbColumns) {
+        char c = rowChars[i - 1];
+        double[] previous = rows[i - 1];
+        double[] current = rows[i];
+        double indel = table.indelCost(c);
+        current[0] = previous[0] + indel;
+        double min = current[0];
+
+        float[] substitutions = table.denseSubstitutions();
+        float[] indels = table.denseIndels();
+        boolean dense = c < ConfusionTable.DENSE_LIMIT;
+        int offset = c * ConfusionTable.DENSE_LIMIT;
+        for (int j = 1; j <= nbColumns; j++) {
+            char other = columns[j - 1];
+            double substitution;
+            double insertion;
+            if (dense && other < ConfusionTable.DENSE_LIMIT) {
+                substitution = substitutions[offset + other];
+                insertion = indels[other];
+            } else {
+                substitution = table.substitutionCost(c, other);
+                insertion = table.indelCost(other);
+            }
+            double value = previous[j - 1] + substitution;
+            double deletion = previous[j] + indel;
+            if (deletion < value)
+                value = deletion;
+            double insert = current[j - 1] + insertion;
+            if (insert < value)
+                value = insert;
+            current[j] = value;
+        }
+
+        int[] rules = table.hasRules() ? table.rulesEndingWith(c) : null;
+        if (rules != null)
+            applyRules(rules, rowChars, i, rows, columns, nbColumns);
+
+        for (int j = 1; j <= nbColumns; j++)
+            if (current[j] < min)
+                min = current[j];
+        return min;
+    }
+
+    /**
+     * Applies the rules whose "from" side ends the chars read, then propagates
+     * the improvements with the insertions.
+     */
+    private void applyRules(int[] rules, char[] rowChars, int i, double[][] rows, char[] columns, int nbColumns) {
+        double[] current = rows[i];
+        for (int j = 1; j <= nbColumns; j++) {
+            for (int id : rules) {
+                char[] from = table.ruleFrom(id);
+                char[] to = table.ruleTo(id);
+                if (from.length > i || to.length > j || !endsWith(rowChars, i, from) || !endsWith(columns, j, to))
+                    continue;
+                double value = rows[i - from.length][j - to.length] + table.ruleCost(id);
+                if (value < current[j])
+                    current[j] = value;
+            }
+            double insert = current[j - 1] + table.indelCost(columns[j - 1]);
+            if (insert < current[j])
+                current[j] = insert;
+        }
+    }
+
+    private static boolean endsWith(char[] chars, int length, char[] suffix) {
+        for (int k = 1; k <= suffix.length; k++)
+            if (chars[length - k] != suffix[suffix.length - k])
+                return false;
+        return true;
+    }
+
+    /**
+     * @return A lower bound of the distance between the columns and any string
+     *         starting with the first i chars read on the rows side, given the
+     *         minimums of the rows up to i. The rules can reach back
+     *         {@link ConfusionTable#MAX_RULE_LENGTH} rows.
+     */
+    public double lowerBound(double[] rowMins, int i) {
+        double bound = rowMins[i];
+        if (table.hasRules())
+            for (int k = Math.max(0, i - ConfusionTable.MAX_RULE_LENGTH + 1); k < i; k++)
+                bound = Math.min(bound, rowMins[k]);
+        return bound;
+    }
+
+    private static final class Scratch {
+
+        private char[] rowChars = new char[0];
+        private char[] columns = new char[0];
+        private double[][] rows = new double[0][0];
+        private double[] rowMins = new double[0];
+
+        private void ensureCapacity(int nbRows, int nbColumns) {
+            if (rowChars.length < nbRows)
+                rowChars = new char[Math.max(nbRows, 2 * rowChars.length)];
+            if (columns.length < nbColumns)
+                columns = new char[Math.max(nbColumns, 2 * columns.length)];
+            if (rows.length < nbRows + 1 || rows[0].length < nbColumns + 1) {
+                int size = Math.max(nbRows + 1, rows.length);
+                int columnSize = Math.max(nbColumns + 1, rows.length == 0 ? 0 : rows[0].length);
+                rows = new double[size][columnSize];
+                rowMins = new double[size];
+            }
+        }
+    }
+
+}
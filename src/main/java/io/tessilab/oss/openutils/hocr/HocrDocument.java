@@ -16,9 +16,30 @@
 package io.tessilab.oss.openutils.hocr;
 
 import java.awt.geom.AffineTransform;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.jsoup.Jsoup;
@@ -38,9 +59,21 @@ public class HocrDocument {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HocrDocument.class);
 
+    public static final int DEFAULT_MAX_LOADED_PAGES = 2;
+
+    private static final String HTML_TYPE = "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">";
+
     // keys : page numbers
     private Map<Integer, HocrPage> pages;
 
+    // lazy mode: the file of the pages, and their positions in it
+    // null when all the pages are in the map
+    private Path source;
+    private Map<Integer, HocrPageReader.PageSpan> pageSpans;
+    private int maxLoadedPages = Integer.MAX_VALUE;
+    // the evicted pages, reused while someone still holds them
+    private Map<Integer, WeakReference<HocrPage>> evictedPages;
+
     private HocrCounters counters;
     private boolean editUnlocked = false;
 
@@ -55,10 +88,183 @@ public class HocrDocument {
 
     public HocrDocument(String htmlContent) {
         this();
-        parseHocrString(htmlContent);
+        parseHocrString(htmlContent, null);
+    }
+
+    /**
+     * Parses the document, and builds its pages in parallel. The pages are
+     * added in their order in the html, once they are all built, so the
+     * document is the same as the one parsed in a single thread.
+     * 
+     * @param htmlContent
+     *            The html of the document.
+     * @param executor
+     *            Builds the pages. If null, they are built in the calling
+     *            thread.
+     */
+    public HocrDocument(String htmlContent, Executor executor) {
+        this();
+        parseHocrString(htmlContent, executor);
+    }
+
+    /**
+     * Reads the document page by page, without building the DOM of the whole
+     * html.
+     * 
+     * @param reader
+     *            The html of the document. It is read until its end, but not
+     *            closed.
+     * @throws IOException
+     *             If the html cannot be read.
+     * @see HocrPageReader
+     */
+    public HocrDocument(Reader reader) throws IOException {
+        this();
+        readHocrPages(reader);
+    }
+
+    /**
+     * Lazy document: the file is only indexed here, and its pages are parsed
+     * when they are asked for. At most {@link #DEFAULT_MAX_LOADED_PAGES} pages
+     * are kept in memory.
+     * 
+     * @see #HocrDocument(Path, int)
+     */
+    public HocrDocument(Path file) throws IOException {
+        this(file, DEFAULT_MAX_LOADED_PAGES);
+    }
+
+    /**
+     * Lazy document: the file is only indexed here, and its pages are parsed
+     * when they are asked for.
+     * <p>
+     * Only the last used pages are kept by the document. An evicted page is
+     * given back as long as it is still referenced elsewhere, so the changes
+     * made to it are kept; otherwise it is parsed again from the file, and the
+     * changes made to it are lost. Editing the document (adding a page or a
+     * word), changing its space or removing its void words loads all its
+     * pages, and keeps them.
+     * 
+     * @param file
+     *            The html file, in UTF-8. It must not change while the document
+     *            is used.
+     * @param maxLoadedPages
+     *            The number of pages kept in memory.
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    public HocrDocument(Path file, int maxLoadedPages) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("The hocr document must be non empty.");
+        if (maxLoadedPages < 1)
+            throw new IllegalArgumentException("At least one page must be kept in memory.");
+        this.maxLoadedPages = maxLoadedPages;
+        this.pages = new LinkedHashMap<Integer, HocrPage>(16, 0.75f, true) {
+            private static final long serialVersionUID = 4108462738645128946L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, HocrPage> eldest) {
+                if (size() <= HocrDocument.this.maxLoadedPages)
+                    return false;
+                evictedPages.put(eldest.getKey(), new WeakReference<>(eldest.getValue()));
+                return true;
+            }
+        };
+        this.evictedPages = new HashMap<>();
+        this.counters = new HocrCounters();
+        indexHocrPages(file);
+    }
+
+    private void indexHocrPages(Path file) throws IOException {
+        pageSpans = new HashMap<>();
+        // one char per byte: the positions are byte offsets
+        try (HocrPageReader pageReader = new HocrPageReader(new BufferedReader(new InputStreamReader(
+                Files.newInputStream(file), StandardCharsets.ISO_8859_1)), this)) {
+            HocrPageReader.PageSpan span;
+            int maxPageNumber = -1;
+            while ((span = pageReader.nextPageSpan()) != null) {
+                if (span.pageNumber < 0)
+                    throw new IllegalArgumentException("A page number cannot be negative.");
+                if (pageSpans.put(span.pageNumber, span) != null)
+                    throw new IllegalArgumentException("This page number already existed in the document.");
+                maxPageNumber = Math.max(maxPageNumber, span.pageNumber);
+            }
+            source = file;
+            checkPageNumbers(maxPageNumber);
+        }
+    }
+
+    /**
+     * Parses a page of a lazy document, or takes it in memory.
+     */
+    private HocrPage loadPage(int pageNumber) {
+        HocrPage page = pages.get(pageNumber);
+        if (page != null)
+            return page;
+        WeakReference<HocrPage> evicted = evictedPages.remove(pageNumber);
+        if (evicted != null && (page = evicted.get()) != null) {
+            pages.put(pageNumber, page);
+            return page;
+        }
+        HocrPageReader.PageSpan span = pageSpans.get(pageNumber);
+        if (span == null)
+            return null;
+
+        ByteBuffer bytes = ByteBuffer.allocate((int) (span.end - span.start));
+        try (FileChannel channel = FileChannel.open(source)) {
+            while (bytes.hasRemaining() && channel.read(bytes, span.start + bytes.position()) >= 0) {
+                // read until the end of the page
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Cannot read the page " + pageNumber + " in " + source, ioe);
+        }
+        String html = new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+        try {
+            page = new HocrPage(Jsoup.parseBodyFragment(html).body().child(0), this);
+        } catch (HocrSyntaxException hse) {
+            LOGGER.debug("Exception while parsing the hocr page.", hse);
+            throw new IllegalArgumentException("Exception while parsing the hocr page.");
+        }
+        pages.put(pageNumber, page);
+        return page;
     }
 
-    private void parseHocrString(String htmlContent) {
+    /**
+     * Loads all the pages of a lazy document, and keeps them in memory: the
+     * document is not lazy any more.
+     */
+    private void loadAllPages() {
+        if (source == null)
+            return;
+        maxLoadedPages = Integer.MAX_VALUE;
+        for (int pageNumber : pageSpans.keySet())
+            loadPage(pageNumber);
+        source = null;
+        pageSpans = null;
+        evictedPages = null;
+    }
+
+    private void readHocrPages(Reader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("The hocr document must be non empty.");
+        }
+
+        HocrPageReader pageReader = new HocrPageReader(reader, this);
+        int maxPageNumber = -1;
+        try {
+            HocrPage page;
+            while ((page = pageReader.nextPage()) != null) {
+                putPageInMap(page);
+                maxPageNumber = Math.max(maxPageNumber, page.getPageNumber());
+            }
+        } catch (HocrSyntaxException hse) {
+            LOGGER.debug("Exception while parsing the hocr page.", hse);
+            throw new IllegalArgumentException("Exception while parsing the hocr page.");
+        }
+        checkPageNumbers(maxPageNumber);
+    }
+
+    private void parseHocrString(String htmlContent, Executor executor) {
         // Sanitize input
         if (htmlContent == null || "".equals(htmlContent.trim())) {
             throw new IllegalArgumentException("The hocr document must be non empty.");
@@ -70,6 +276,10 @@ public class HocrDocument {
         // We get the pages
         // We trust the html for the ids.
         Iterator<Element> pageIt = doc.body().getElementsByClass(HTMLConstants.PAGE_CLASS).iterator();
+        if (executor != null) {
+            parsePages(pageIt, executor);
+            return;
+        }
         int maxPageNumber = -1;
         while (pageIt.hasNext()) {
             Element pageElem = pageIt.next();
@@ -85,11 +295,52 @@ public class HocrDocument {
                 throw new IllegalArgumentException("Exception while parsing the hocr page.");
             }
         }
+        checkPageNumbers(maxPageNumber);
+    }
+
+    /**
+     * Builds the pages with the executor: the pages do not share anything
+     * while they are built (they keep the ids of the html, and do not use the
+     * counters).
+     */
+    private void parsePages(Iterator<Element> pageIt, Executor executor) {
+        List<CompletableFuture<HocrPage>> futurePages = new ArrayList<>();
+        while (pageIt.hasNext()) {
+            Element pageElem = pageIt.next();
+            futurePages.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new HocrPage(pageElem, this);
+                } catch (HocrSyntaxException hse) {
+                    throw new CompletionException(hse);
+                }
+            }, executor));
+        }
+
+        int maxPageNumber = -1;
+        for (CompletableFuture<HocrPage> futurePage : futurePages) {
+            HocrPage page;
+            try {
+                page = futurePage.join();
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof HocrSyntaxException) {
+                    LOGGER.debug("Exception while parsing the hocr page.", ce.getCause());
+                    throw new IllegalArgumentException("Exception while parsing the hocr page.");
+                }
+                if (ce.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ce.getCause();
+                throw ce;
+            }
+            putPageInMap(page);
+            maxPageNumber = Math.max(maxPageNumber, page.getPageNumber());
+        }
+        checkPageNumbers(maxPageNumber);
+    }
 
+    private void checkPageNumbers(int maxPageNumber) {
         if (maxPageNumber != getNbOfPages() - 1)
             throw new IllegalArgumentException("The pages have bad numbers");
 
-        if (pages.isEmpty())
+        if (getNbOfPages() == 0)
             throw new IllegalArgumentException("There must be at least one page in the body.");
     }
 
@@ -107,6 +358,8 @@ public class HocrDocument {
      * @return The number of pages in this document.
      */
     public int getNbOfPages() {
+        if (source != null)
+            return pageSpans.size();
         return pages.size();
     }
 
@@ -142,6 +395,7 @@ public class HocrDocument {
      */
     void makeEditable() {
         if (!editUnlocked) {
+            loadAllPages();
             counters.resetCounters();
             for (HocrPage pp : pages.values()) {
                 pp.rewriteAllIds();
@@ -160,12 +414,20 @@ public class HocrDocument {
      * @return
      */
     public HocrPage getPage(int i) {
-        if (i >= pages.size())
+        if (i >= getNbOfPages())
             return null;
+        if (source != null)
+            return loadPage(i);
         return pages.get(i);
     }
 
+    /**
+     * @return The pages, sorted by number. In a lazy document, the pages are
+     *         parsed when the stream reaches them.
+     */
     public Stream<HocrPage> getPageStream() {
+        if (source != null)
+            return IntStream.range(0, getNbOfPages()).mapToObj(this::getPage);
         return pages.values().stream().sorted((p1, p2) -> p1.getPageNumber() - p2.getPageNumber());
     }
 
@@ -193,12 +455,63 @@ public class HocrDocument {
         // add the pages
         getPageStream().forEach(page -> body.appendChild(page.toHtmlElement()));
 
-        String htmlType = "<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">";
+        return HTML_TYPE + "\n" + doc.toString();
+    }
+
+    /**
+     * Writes the same html as {@link #toHocrString()}, without building it in
+     * memory: the sections are written one by one.
+     * 
+     * @param writer
+     *            Where to write the html. It is flushed, but not closed.
+     * @throws IOException
+     *             If the html cannot be written.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        HocrWriter out = new HocrWriter(writer);
+        out.raw(HTML_TYPE + "\n");
+        out.startElement("html");
+
+        // the header
+        out.startElement(HTMLConstants.TAG_HEAD);
+        out.startElement(HTMLConstants.TAG_TITLE);
+        out.endElement();
+        out.startElement(HTMLConstants.TAG_META);
+        out.attribute("http-equiv", "Content-Type");
+        out.attribute("content", "text/html;charset=utf-8");
+        out.endElement();
+        out.startElement(HTMLConstants.TAG_META);
+        out.attribute("name", "ocr-system");
+        out.attribute("content", "tesseract");
+        out.endElement();
+        out.endElement();
+
+        // the pages
+        out.startElement(HTMLConstants.TAG_BODY);
+        Iterator<HocrPage> pageIt = getPageStream().iterator();
+        while (pageIt.hasNext())
+            pageIt.next().writeHtml(out);
+        out.endElement();
+
+        out.endElement();
+        out.flush();
+    }
 
-        return htmlType + "\n" + doc.toString();
+    /**
+     * Writes the html of {@link #toHocrString()} in UTF-8.
+     * 
+     * @param stream
+     *            Where to write the html. It is flushed, but not closed.
+     * @throws IOException
+     *             If the html cannot be written.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        writeTo(writer);
     }
 
     public void removeVoidWords() {
+        loadAllPages();
         getPageStream().forEach(HocrPage::removeVoidWords);
     }
 
@@ -210,6 +523,7 @@ public class HocrDocument {
     public void toHocrSpace() {
         if (inHocrSpace)
             return;
+        loadAllPages();
         for (int k = 0; k < getNbOfPages(); k++) {
             HocrPage page = getPage(k);
             AffineTransform aTransform = page.getAffineTransform();
@@ -231,6 +545,7 @@ public class HocrDocument {
     public void toImageSpace() {
         if (!inHocrSpace)
             return;
+        loadAllPages();
         for (int k = 0; k < getNbOfPages(); k++) {
             HocrPage page = getPage(k);
             AffineTransform aTransform = (AffineTransform) page.getAffineTransform().clone();
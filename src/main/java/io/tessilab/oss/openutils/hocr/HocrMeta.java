@@ -16,6 +16,7 @@
 package io.tessilab.oss.openutils.hocr;
 
 import java.awt.Rectangle;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -118,4 +119,17 @@ public class HocrMeta {
         }
         return elem;
     }
+
+    /**
+     * Writes the html of {@link #toHtmlElement()}.</br> Visibility: package
+     */
+    void writeHtml(HocrWriter out) throws IOException {
+        out.startElement(HTMLConstants.TAG_DIV);
+        out.attribute(HTMLConstants.CLASS, HTMLConstants.META_CLASS);
+        for (List<NTContent> nts : ntContents.values()) {
+            for (NTContent nt : nts)
+                nt.writeHtml(out);
+        }
+        out.endElement();
+    }
 }
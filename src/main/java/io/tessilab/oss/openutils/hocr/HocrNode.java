@@ -16,6 +16,7 @@
 package io.tessilab.oss.openutils.hocr;
 
 import java.awt.Rectangle;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -107,4 +108,24 @@ public abstract class HocrNode extends HocrSection {
         return elem;
     }
 
+    @Override
+    void writeHtml(HocrWriter out) throws IOException {
+        out.startElement(getElementTag());
+        writeHtmlAttributes(out);
+        for (HocrSection child : getChilds()) {
+            child.writeHtml(out);
+        }
+        out.endElement();
+    }
+
+    /**
+     * Writes the attributes of {@link #toHtmlElement()}, in the same order.
+     * </br> Visibility: package
+     */
+    void writeHtmlAttributes(HocrWriter out) throws IOException {
+        out.attribute(HTMLConstants.CLASS, getElementClassAttribute());
+        out.attribute(HTMLConstants.ID, getId());
+        out.attribute(HTMLConstants.TITLE, getBBoxHocrString());
+    }
+
 }
@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -147,27 +148,55 @@ public class HocrPage extends HocrNode {
     @Override
     protected Element toHtmlElement() {
         Element elem = super.toHtmlElement();
-        String title = HTMLConstants.PAGE_TITLE_START + getBBoxHocrString() + HTMLConstants.PAGE_TITLE_END + this.pageNumber;
-        elem.attr(HTMLConstants.TITLE, title);
+        elem.attr(HTMLConstants.TITLE, getPageTitle());
         if (meta != null && !meta.isEmpty())
             elem.appendChild(meta.toHtmlElement()); // for the meta
         // add charwidth
         elem.attr(HTMLConstants.CHAR_WIDTH, Integer.toString(charWidth));
 
         // add affine transform matrix
+        elem.attr(HTMLConstants.AFFINE_TRANSFORM, getAffineTransformString());
+
+        // add dpi
+        elem.attr(HTMLConstants.DPI, Double.toString(this.dpi));
+
+        return elem;
+    }
+
+    @Override
+    void writeHtml(HocrWriter out) throws IOException {
+        out.startElement(getElementTag());
+        writeHtmlAttributes(out);
+        for (HocrSection child : getChilds()) {
+            child.writeHtml(out);
+        }
+        if (meta != null && !meta.isEmpty())
+            meta.writeHtml(out); // for the meta
+        out.endElement();
+    }
+
+    @Override
+    void writeHtmlAttributes(HocrWriter out) throws IOException {
+        out.attribute(HTMLConstants.CLASS, getElementClassAttribute());
+        out.attribute(HTMLConstants.ID, getId());
+        out.attribute(HTMLConstants.TITLE, getPageTitle());
+        out.attribute(HTMLConstants.CHAR_WIDTH, Integer.toString(charWidth));
+        out.attribute(HTMLConstants.AFFINE_TRANSFORM, getAffineTransformString());
+        out.attribute(HTMLConstants.DPI, Double.toString(this.dpi));
+    }
+
+    private String getPageTitle() {
+        return HTMLConstants.PAGE_TITLE_START + getBBoxHocrString() + HTMLConstants.PAGE_TITLE_END + this.pageNumber;
+    }
+
+    private String getAffineTransformString() {
         double m00 = affineTransform.getScaleX();
         double m10 = affineTransform.getShearY();
         double m01 = affineTransform.getShearX();
         double m11 = affineTransform.getScaleY();
         double m02 = affineTransform.getTranslateX();
         double m12 = affineTransform.getTranslateY();
-        String tranformStr = Double.toString(m00) + " " + Double.toString(m10) + " " + Double.toString(m01) + " " + Double.toString(m11) + " " + Double.toString(m02) + " " + Double.toString(m12);
-        elem.attr(HTMLConstants.AFFINE_TRANSFORM, tranformStr);
-
-        // add dpi
-        elem.attr(HTMLConstants.DPI, Double.toString(this.dpi));
-
-        return elem;
+        return Double.toString(m00) + " " + Double.toString(m10) + " " + Double.toString(m01) + " " + Double.toString(m11) + " " + Double.toString(m02) + " " + Double.toString(m12);
     }
 
     @Override
@@ -176,9 +205,19 @@ public class HocrPage extends HocrNode {
     }
     
     private void readPageNumberFromTitle(Element element) {
-        String title = element.attr(HTMLConstants.TITLE);
-        String nb = title.split("ppageno")[1].trim();
-        this.pageNumber = Integer.parseInt(nb);
+        this.pageNumber = readPageNumber(element.attr(HTMLConstants.TITLE));
+    }
+
+    /**
+     * @param title
+     *            The title attribute of a page.
+     * @return The page number in this title.</br> Visibility: package
+     */
+    static int readPageNumber(String title) {
+        HocrTitle hocrTitle = HocrUtils.parseTitle(title);
+        if (!hocrTitle.hasPageNumber())
+            throw new IllegalArgumentException("There is no page number in the title: " + title);
+        return hocrTitle.getPageNumber();
     }
 
     public int getPageNumber() {
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+/**
+ * Reads the pages of an hOCR document one at a time, from a {@link Reader}.
+ * <p>
+ * The html is scanned in a single pass by a small tolerant tokenizer, which
+ * skips everything outside the pages (comments, doctype, head...) and only
+ * keeps the html of the current page (the element with the
+ * {@link HTMLConstants#PAGE_CLASS} class, until its matching end tag). Only
+ * this html is parsed by Jsoup to build the {@link HocrPage}, so neither the
+ * whole document nor its whole DOM are ever in memory.
+ * 
+ * @see HocrDocument#HocrDocument(Reader)
+ */
+public class HocrPageReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    private final Reader reader;
+    private final HocrDocument document;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    // the number of chars read
+    private long offset;
+
+    // the title attribute of the last start tag
+    private String tagTitle;
+    // the position and the title attribute of the current page
+    private long pageStart;
+    private String pageTitle;
+
+    // the html of the page being read, null outside the pages
+    private StringBuilder pageHtml;
+
+    /**
+     * @param reader
+     *            The html of the document.
+     * @param document
+     *            The document of the pages.
+     */
+    public HocrPageReader(Reader reader, HocrDocument document) {
+        if (reader == null || document == null)
+            throw new IllegalArgumentException("The reader and the document cannot be null.");
+        this.reader = reader;
+        this.document = document;
+    }
+
+    /**
+     * Reads the next page. The page belongs to the document, but is not added
+     * to it.
+     * 
+     * @return The next page, or null at the end of the html.
+     * @throws IOException
+     *             If the html cannot be read.
+     * @throws HocrSyntaxException
+     *             If the page is not valid.
+     */
+    public HocrPage nextPage() throws IOException, HocrSyntaxException {
+        String html = nextPageHtml(true);
+        if (html == null)
+            return null;
+        Element element = Jsoup.parseBodyFragment(html).body().child(0);
+        return new HocrPage(element, document);
+    }
+
+    /**
+     * Skips the next page, and only returns where it is in the html. The
+     * positions are in chars: they are byte offsets when the html is read one
+     * char per byte (ISO-8859-1), which is safe for the tags of an UTF-8
+     * document.</br> Visibility: package
+     * 
+     * @return The position of the next page, or null at the end of the html.
+     */
+    PageSpan nextPageSpan() throws IOException {
+        if (nextPageHtml(false) == null)
+            return null;
+        return new PageSpan(pageStart, offset, HocrPage.readPageNumber(pageTitle));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * @param keepHtml
+     *            If false, the html of the page is skipped, and an empty string
+     *            is returned instead.
+     * @return The html of the next page, or null at the end of the html.
+     */
+    private String nextPageHtml(boolean keepHtml) throws IOException {
+        String pageTag = null;
+        int depth = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            if (c != '<')
+                continue;
+            long tagStart = offset - 1;
+            int next = peek();
+            if (next == '!' || next == '?') {
+                skipDeclaration();
+            } else if (next == '/') {
+                read();
+                String name = readTagName();
+                skipUntil('>');
+                if (pageTag != null && pageTag.equals(name) && --depth == 0)
+                    return endPage(keepHtml);
+            } else if (Character.isLetter(next)) {
+                StringBuilder tag = new StringBuilder("<");
+                String name = readTagName(tag);
+                String classes = readAttributes(tag);
+                boolean selfClosing = tag.charAt(tag.length() - 2) == '/';
+                if (pageTag == null) {
+                    if (isPageClass(classes)) {
+                        pageStart = tagStart;
+                        pageTitle = tagTitle;
+                        if (keepHtml)
+                            pageHtml = tag;
+                        if (selfClosing)
+                            return endPage(keepHtml);
+                        pageTag = name;
+                        depth = 1;
+                    }
+                } else if (pageTag.equals(name) && !selfClosing) {
+                    depth++;
+                }
+                if (!selfClosing && isRawTextTag(name))
+                    skipRawText(name);
+            }
+        }
+        // a page without end tag ends with the html
+        return pageTag == null ? null : endPage(keepHtml);
+    }
+
+    private String endPage(boolean keepHtml) {
+        if (!keepHtml)
+            return "";
+        String html = pageHtml.toString();
+        pageHtml = null;
+        return html;
+    }
+
+    private static boolean isRawTextTag(String name) {
+        return "script".equals(name) || "style".equals(name) || HTMLConstants.TAG_TITLE.equals(name)
+                || "textarea".equals(name);
+    }
+
+    private static boolean isPageClass(String classes) {
+        if (classes == null)
+            return false;
+        // looks for the token among the space separated class names
+        String token = HTMLConstants.PAGE_CLASS;
+        int length = classes.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && Character.isWhitespace(classes.charAt(start)))
+                start++;
+            int end = start;
+            while (end < length && !Character.isWhitespace(classes.charAt(end)))
+                end++;
+            if (end - start == token.length() && classes.regionMatches(true, start, token, 0, token.length()))
+                return true;
+            start = end;
+        }
+        return false;
+    }
+
+    private String readTagName() throws IOException {
+        return readTagName(null);
+    }
+
+    /**
+     * Reads a tag name (after the '<'), in lower case.
+     */
+    private String readTagName(StringBuilder tag) throws IOException {
+        StringBuilder name = new StringBuilder();
+        int c;
+        while ((c = peek()) >= 0 && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+            name.append((char) read());
+            if (tag != null)
+                tag.append((char) c);
+        }
+        return name.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reads the attributes of a start tag, until its '>' (included).
+     * 
+     * @return The value of the class attribute, or null. The value of the title
+     *         attribute is kept in {@link #tagTitle}.
+     */
+    private String readAttributes(StringBuilder tag) throws IOException {
+        String classes = null;
+        tagTitle = null;
+        int c;
+        while ((c = read()) >= 0) {
+            tag.append((char) c);
+            if (c == '>')
+                break;
+            if (Character.isWhitespace(c) || c == '/')
+                continue;
+
+            StringBuilder name = new StringBuilder().append((char) c);
+            while ((c = peek()) >= 0 && c != '=' && c != '>' && c != '/' && !Character.isWhitespace(c))
+                name.append((char) append(tag, read()));
+            while ((c = peek()) >= 0 && Character.isWhitespace(c))
+                append(tag, read());
+            if (c != '=')
+                continue;
+            append(tag, read());
+            while ((c = peek()) >= 0 && Character.isWhitespace(c))
+                append(tag, read());
+
+            StringBuilder value = new StringBuilder();
+            if (c == '"' || c == '\'') {
+                int quote = append(tag, read());
+                while ((c = read()) >= 0 && c != quote)
+                    value.append((char) append(tag, c));
+                if (c >= 0)
+                    append(tag, c);
+            } else {
+                while ((c = peek()) >= 0 && c != '>' && !Character.isWhitespace(c))
+                    value.append((char) append(tag, read()));
+            }
+            if (HTMLConstants.CLASS.equalsIgnoreCase(name.toString()))
+                classes = value.toString();
+            else if (HTMLConstants.TITLE.equalsIgnoreCase(name.toString()))
+                tagTitle = value.toString();
+        }
+        if (c < 0)
+            tag.append('>');
+        return classes;
+    }
+
+    private static int append(StringBuilder tag, int c) {
+        tag.append((char) c);
+        return c;
+    }
+
+    /**
+     * Skips a comment, a doctype or a processing instruction (after the '<').
+     */
+    private void skipDeclaration() throws IOException {
+        read();
+        if (peek() == '-') {
+            read();
+            if (peek() == '-') {
+                read();
+                // the comment ends at the first "-->"
+                int dashes = 0;
+                int c;
+                while ((c = read()) >= 0 && !(c == '>' && dashes >= 2))
+                    dashes = c == '-' ? dashes + 1 : 0;
+                return;
+            }
+        }
+        skipUntil('>');
+    }
+
+    /**
+     * Skips the content of a script, a style, a title or a textarea, until its
+     * end tag.
+     */
+    private void skipRawText(String name) throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '<' && peek() == '/') {
+                read();
+                if (name.equals(readTagName())) {
+                    skipUntil('>');
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipUntil(char end) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != end) {
+            // skip
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position];
+    }
+
+    /**
+     * Reads a char, which is kept in the html of the page if one is being
+     * read.
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill())
+            return -1;
+        char c = buffer[position++];
+        offset++;
+        if (pageHtml != null)
+            pageHtml.append(c);
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0)
+            return false;
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    /**
+     * The position of a page in the html, and its number.</br> Visibility:
+     * package
+     */
+    static class PageSpan {
+
+        final long start;
+        final long end;
+        final int pageNumber;
+
+        PageSpan(long start, long end, int pageNumber) {
+            this.start = start;
+            this.end = end;
+            this.pageNumber = pageNumber;
+        }
+
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package io.tessilab.oss.openutils.hocr;
 
+import java.io.IOException;
+
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,4 +77,10 @@ public class HocrParagraph extends HocrNode {
         return elem;
     }
 
+    @Override
+    void writeHtmlAttributes(HocrWriter out) throws IOException {
+        super.writeHtmlAttributes(out);
+        out.attribute("dir", ReadingDirection.toHocrString(this.getReadingDirection()));
+    }
+
 }
@@ -18,6 +18,7 @@ package io.tessilab.oss.openutils.hocr;
 import io.tessilab.oss.openutils.bbox.BBoxable;
 
 import java.awt.Rectangle;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
@@ -68,6 +69,14 @@ public abstract class HocrSection implements Serializable, BBoxable {
 
     protected abstract Element toHtmlElement();
 
+    /**
+     * Writes the html of this section, like {@link #toHtmlElement()}. By
+     * default, the element is built and written.</br> Visibility: package
+     */
+    void writeHtml(HocrWriter out) throws IOException {
+        out.element(toHtmlElement());
+    }
+
     public HocrPage getPage() {
         if (parent != null)
             return parent.getPage();
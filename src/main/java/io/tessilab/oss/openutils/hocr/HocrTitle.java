@@ -0,0 +1,315 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import java.awt.Rectangle;
+
+/**
+ * The properties of the title attribute of an hOCR element, like
+ * <code>bbox 10 20 110 40; baseline 0.01 -5; x_wconf 93</code>.
+ * <p>
+ * The title is read in a single pass over its chars, without regex, split nor
+ * substrings: an instance can be reused for many titles (one per thread), so
+ * parsing a title does not allocate anything.
+ */
+public class HocrTitle {
+
+    public static final String BBOX = HTMLConstants.BBOX;
+    public static final String CONFIDENCE = HTMLConstants.CONFIDENCE;
+    public static final String PAGE_NUMBER = "ppageno";
+    public static final String BASELINE = "baseline";
+
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15 };
+
+    private boolean hasBBox;
+    private int x0;
+    private int y0;
+    private int x1;
+    private int y1;
+
+    private boolean hasConfidence;
+    private double confidence;
+
+    private boolean hasPageNumber;
+    private int pageNumber;
+
+    private boolean hasBaseline;
+    private double baselineSlope;
+    private double baselineOffset;
+
+    // the title being parsed, and the position in it
+    private String title;
+    private int pos;
+    private int end;
+
+    /**
+     * Parses a title. The properties of the previous title are forgotten, and
+     * the unknown or malformed properties are ignored.
+     * 
+     * @param title
+     *            The title attribute. Null is read as an empty title.
+     * @return This title.
+     */
+    public HocrTitle parse(String title) {
+        hasBBox = false;
+        hasConfidence = false;
+        hasPageNumber = false;
+        hasBaseline = false;
+        if (title == null)
+            return this;
+
+        this.title = title;
+        this.pos = 0;
+        this.end = title.length();
+        while (pos < end) {
+            skipSpaces();
+            int nameStart = pos;
+            while (pos < end && !isSpace(title.charAt(pos)) && title.charAt(pos) != ';')
+                pos++;
+            readProperty(nameStart, pos);
+            skipProperty();
+        }
+        this.title = null;
+        return this;
+    }
+
+    private void readProperty(int nameStart, int nameEnd) {
+        if (isName(BBOX, nameStart, nameEnd)) {
+            long left = readInt();
+            long top = readInt();
+            long right = readInt();
+            long bottom = readInt();
+            if (left != Long.MIN_VALUE && top != Long.MIN_VALUE && right != Long.MIN_VALUE
+                    && bottom != Long.MIN_VALUE && isPropertyEnd()) {
+                x0 = (int) left;
+                y0 = (int) top;
+                x1 = (int) right;
+                y1 = (int) bottom;
+                hasBBox = true;
+            }
+        } else if (isName(CONFIDENCE, nameStart, nameEnd)) {
+            double value = readDouble();
+            if (!Double.isNaN(value) && isPropertyEnd()) {
+                confidence = value;
+                hasConfidence = true;
+            }
+        } else if (isName(PAGE_NUMBER, nameStart, nameEnd)) {
+            long value = readInt();
+            if (value != Long.MIN_VALUE && isPropertyEnd()) {
+                pageNumber = (int) value;
+                hasPageNumber = true;
+            }
+        } else if (isName(BASELINE, nameStart, nameEnd)) {
+            double slope = readDouble();
+            double offset = readDouble();
+            if (!Double.isNaN(slope) && !Double.isNaN(offset) && isPropertyEnd()) {
+                baselineSlope = slope;
+                baselineOffset = offset;
+                hasBaseline = true;
+            }
+        }
+    }
+
+    private boolean isName(String name, int start, int stop) {
+        return stop - start == name.length() && title.regionMatches(start, name, 0, name.length());
+    }
+
+    private boolean isPropertyEnd() {
+        skipSpaces();
+        return pos == end || title.charAt(pos) == ';';
+    }
+
+    /**
+     * Skips the rest of the property, and its ';'. The quoted strings (like
+     * the image path of a page) can contain ';'.
+     */
+    private void skipProperty() {
+        boolean quoted = false;
+        while (pos < end) {
+            char c = title.charAt(pos++);
+            if (c == '"')
+                quoted = !quoted;
+            else if (c == ';' && !quoted)
+                return;
+        }
+    }
+
+    /**
+     * @return The next integer, or Long.MIN_VALUE if it is not an integer.
+     */
+    private long readInt() {
+        skipSpaces();
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && (title.charAt(pos) == '-' || title.charAt(pos) == '+'))
+            negative = title.charAt(pos++) == '-';
+        long value = 0;
+        int digitsStart = pos;
+        while (pos < end && pos - digitsStart < 18 && isDigit(title.charAt(pos)))
+            value = 10 * value + (title.charAt(pos++) - '0');
+        if (pos == digitsStart || !isValueEnd()) {
+            pos = start;
+            return Long.MIN_VALUE;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return The next number, or NaN if it is not a number.
+     */
+    private double readDouble() {
+        skipSpaces();
+        int start = pos;
+        while (pos < end && !isSpace(title.charAt(pos)) && title.charAt(pos) != ';')
+            pos++;
+        try {
+            return parseDouble(title, start, pos);
+        } catch (NumberFormatException e) {
+            pos = start;
+            return Double.NaN;
+        }
+    }
+
+    private boolean isValueEnd() {
+        return pos == end || isSpace(title.charAt(pos)) || title.charAt(pos) == ';';
+    }
+
+    private void skipSpaces() {
+        while (pos < end && isSpace(title.charAt(pos)))
+            pos++;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Parses a number like {@link Double#parseDouble(String)}, with the same
+     * result, but without allocation for the usual decimal numbers (like
+     * <code>-12.5</code>).
+     * 
+     * @throws NumberFormatException
+     *             If the string is not a number.
+     */
+    public static double parseDouble(String s) {
+        if (s == null)
+            throw new NumberFormatException("null");
+        int start = 0;
+        int stop = s.length();
+        while (start < stop && s.charAt(start) <= ' ')
+            start++;
+        while (stop > start && s.charAt(stop - 1) <= ' ')
+            stop--;
+        return parseDouble(s, start, stop);
+    }
+
+    private static double parseDouble(String s, int start, int stop) {
+        int k = start;
+        boolean negative = false;
+        if (k < stop && (s.charAt(k) == '-' || s.charAt(k) == '+'))
+            negative = s.charAt(k++) == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean point = false;
+        for (; k < stop; k++) {
+            char c = s.charAt(k);
+            if (isDigit(c)) {
+                mantissa = 10 * mantissa + (c - '0');
+                digits++;
+                if (point)
+                    decimals++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (k < stop || digits == 0 || digits > MAX_EXACT_DIGITS) {
+            // exponent, too many digits, or not a number: the slow path
+            return Double.parseDouble(s.substring(start, stop));
+        }
+        // both are exact, so the division is correctly rounded
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    public boolean hasBBox() {
+        return hasBBox;
+    }
+
+    /**
+     * @return A new rectangle, from the bbox corners.
+     * @throws IllegalStateException
+     *             If there is no bbox in the title.
+     */
+    public Rectangle getBBox() {
+        if (!hasBBox)
+            throw new IllegalStateException("There is no bbox in the title.");
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    public int getX0() {
+        return x0;
+    }
+
+    public int getY0() {
+        return y0;
+    }
+
+    public int getX1() {
+        return x1;
+    }
+
+    public int getY1() {
+        return y1;
+    }
+
+    public boolean hasConfidence() {
+        return hasConfidence;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public boolean hasPageNumber() {
+        return hasPageNumber;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public boolean hasBaseline() {
+        return hasBaseline;
+    }
+
+    public double getBaselineSlope() {
+        return baselineSlope;
+    }
+
+    public double getBaselineOffset() {
+        return baselineOffset;
+    }
+
+}
@@ -29,8 +29,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.jsoup.Jsoup;
@@ -40,8 +38,8 @@ import org.jsoup.select.Elements;
 
 public class HocrUtils {
 
-    private static final Pattern PATTERN_BBOX = Pattern.compile("^.*bbox (.*?);.*$");
-    private static final Pattern PATTERN_BBOX_AND_CONF = Pattern.compile("bbox (.*); x_wconf (.*).*$");
+    // one title parser per thread, reused for all the titles
+    private static final ThreadLocal<HocrTitle> TITLE = ThreadLocal.withInitial(HocrTitle::new);
 
     private HocrUtils() {
     }
@@ -110,25 +108,28 @@ public class HocrUtils {
         return addedIds;
     }
 
+    /**
+     * @param str
+     *            The title of an hOCR element.
+     * @return The bbox in the title.
+     * @throws IllegalArgumentException
+     *             If there is no bbox in the title.
+     */
     public static Rectangle readBoundingBox(String str) {
-        String[] splits = str.split(";?\\s+");
-
-        int index = 0;
-        String cur;
-        // go to the definition of the bbox
-        cur = splits[0];
-        while (!"bbox".equals(cur)) {
-            index++;
-            cur = splits[index];
-        }
-        index++; // to get to the first number
-
-        int x = Integer.parseInt(splits[index]);
-        int y = Integer.parseInt(splits[index + 1]);
-        int w = Integer.parseInt(splits[index + 2]) - x;
-        int h = Integer.parseInt(splits[index + 3]) - y;
+        HocrTitle title = parseTitle(str);
+        if (!title.hasBBox())
+            throw new IllegalArgumentException("There is no bbox in the title: " + str);
+        return title.getBBox();
+    }
 
-        return new Rectangle(x, y, w, h);
+    /**
+     * Visibility: package
+     * 
+     * @return The title parser of this thread, which read the given title. It
+     *         is only valid until the next call.
+     */
+    static HocrTitle parseTitle(String str) {
+        return TITLE.get().parse(str);
     }
 
     public static Document parseToDocument(String htmlContent) {
@@ -136,9 +137,9 @@ public class HocrUtils {
     }
 
     public static Rectangle buildRectangleFromHtmlBBox(String title) {
-        Matcher matcher = PATTERN_BBOX.matcher(title);
-        if (matcher.matches()) {
-            return buildRectangle(matcher.group(1));
+        HocrTitle hocrTitle = parseTitle(title);
+        if (hocrTitle.hasBBox()) {
+            return hocrTitle.getBBox();
         }
         return null;
     }
@@ -175,11 +176,9 @@ public class HocrUtils {
         ocrxWords.forEach(w -> {
             final String text = w.text().replaceAll("’", "").replaceAll("N‘", "N°").replaceAll("n‘", "n°").replaceAll("N\"", "N°");
             if (StringUtils.isNotEmpty(text)) {
-                final String title = w.attr("title");
-                Matcher matcher = PATTERN_BBOX_AND_CONF.matcher(title);
-                if (matcher.matches()) {
-                    final Rectangle rectangle = buildRectangle(matcher.group(1));
-                    words.add(new HocrXWord(UUID.randomUUID().toString(), rectangle, null, text, Double.parseDouble(matcher.group(2))));
+                final HocrTitle title = parseTitle(w.attr("title"));
+                if (title.hasBBox() && title.hasConfidence()) {
+                    words.add(new HocrXWord(UUID.randomUUID().toString(), title.getBBox(), null, text, title.getConfidence()));
                 }
             }
         });
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Tag;
+
+/**
+ * Writes html straight to a {@link Writer}, element by element, through a
+ * small buffer.
+ * <p>
+ * The output is the one of Jsoup for the same elements, with its default
+ * settings (pretty print with an indent of 1, html syntax, base entities and
+ * UTF-8), so that {@link HocrDocument#writeTo(Writer)} writes exactly what
+ * {@link HocrDocument#toHocrString()} returns.</br> Visibility: package
+ */
+class HocrWriter {
+
+    private static final int BUFFER_SIZE = 1 << 13;
+    // jsoup looks at 6 levels of parents for the tags keeping their spaces
+    private static final int MAX_PRESERVE_WHITESPACE_DEPTH = 6;
+
+    private final Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int length;
+
+    // the open elements
+    private Tag[] tags = new Tag[16];
+    private boolean[] hasChildren = new boolean[16];
+    private int depth;
+    // true while the start tag of the last open element is not ended by a '>'
+    private boolean inStartTag;
+    // false until the first element
+    private boolean started;
+
+    HocrWriter(Writer out) {
+        if (out == null)
+            throw new IllegalArgumentException("The writer cannot be null.");
+        this.out = out;
+    }
+
+    /**
+     * Opens an element: its attributes must follow, then its children.
+     */
+    void startElement(String tagName) throws IOException {
+        Tag tag = Tag.valueOf(tagName);
+        addChild();
+        boolean parentBlock = depth > 0 && tags[depth - 1].formatAsBlock();
+        if (started && (tag.formatAsBlock() || parentBlock))
+            indent(depth);
+        started = true;
+        append('<');
+        append(tagName);
+
+        if (depth == tags.length) {
+            tags = Arrays.copyOf(tags, 2 * depth);
+            hasChildren = Arrays.copyOf(hasChildren, 2 * depth);
+        }
+        tags[depth] = tag;
+        hasChildren[depth] = false;
+        depth++;
+        inStartTag = true;
+    }
+
+    /**
+     * Adds an attribute to the element just opened.
+     * 
+     * @param value
+     *            The value of the attribute. If null, only the key is written.
+     */
+    void attribute(String key, String value) throws IOException {
+        if (!inStartTag)
+            throw new IllegalStateException("The attributes must follow the start of their element.");
+        append(' ');
+        append(key);
+        if (value != null) {
+            append('=');
+            append('"');
+            escape(value, true, false);
+            append('"');
+        }
+    }
+
+    /**
+     * Adds a text to the current element.
+     */
+    void text(String text) throws IOException {
+        if (depth == 0)
+            throw new IllegalStateException("A text must be in an element.");
+        boolean first = !hasChildren[depth - 1];
+        addChild();
+        if (first && tags[depth - 1].formatAsBlock() && !isBlank(text))
+            indent(depth);
+        escape(text, false, !preserveWhitespace());
+    }
+
+    /**
+     * Closes the current element.
+     */
+    void endElement() throws IOException {
+        if (depth == 0)
+            throw new IllegalStateException("There is no element to close.");
+        depth--;
+        Tag tag = tags[depth];
+        tags[depth] = null;
+        if (inStartTag) {
+            inStartTag = false;
+            if (tag.isSelfClosing()) {
+                append(tag.isEmpty() ? ">" : " />");
+                return;
+            }
+            append('>');
+        } else if (tag.formatAsBlock()) {
+            indent(depth);
+        }
+        append("</");
+        append(tag.getName());
+        append('>');
+    }
+
+    /**
+     * Writes an element and its children, as they are.
+     */
+    void element(Element element) throws IOException {
+        startElement(element.tagName());
+        for (Attribute attribute : element.attributes())
+            attribute(attribute.getKey(), attribute.getValue());
+        for (Node child : element.childNodes()) {
+            if (child instanceof Element) {
+                element((Element) child);
+            } else if (child instanceof TextNode) {
+                text(((TextNode) child).getWholeText());
+            } else {
+                addChild();
+                append(child.outerHtml());
+            }
+        }
+        endElement();
+    }
+
+    /**
+     * Writes a string without escaping it.
+     */
+    void raw(String s) throws IOException {
+        append(s);
+    }
+
+    /**
+     * Writes the buffer to the writer, and flushes it.
+     */
+    void flush() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+        out.flush();
+    }
+
+    /**
+     * Ends the start tag of the current element, if needed, before one of its
+     * children.
+     */
+    private void addChild() throws IOException {
+        if (depth == 0)
+            return;
+        if (inStartTag) {
+            append('>');
+            inStartTag = false;
+        }
+        hasChildren[depth - 1] = true;
+    }
+
+    private boolean preserveWhitespace() {
+        for (int k = depth - 1; k >= 0 && k >= depth - MAX_PRESERVE_WHITESPACE_DEPTH; k--)
+            if (tags[k].preserveWhitespace())
+                return true;
+        return false;
+    }
+
+    private void indent(int level) throws IOException {
+        append('\n');
+        for (int k = 0; k < level; k++)
+            append(' ');
+    }
+
+    /**
+     * Escapes like the jsoup entities in base mode, for UTF-8.
+     */
+    private void escape(String s, boolean inAttribute, boolean normaliseWhite) throws IOException {
+        boolean lastWasWhite = false;
+        int n = s.length();
+        for (int k = 0; k < n; k++) {
+            char c = s.charAt(k);
+            if (normaliseWhite) {
+                if (isWhitespace(c)) {
+                    if (!lastWasWhite)
+                        append(' ');
+                    lastWasWhite = true;
+                    continue;
+                }
+                lastWasWhite = false;
+            }
+            switch (c) {
+            case '&':
+                append("&amp;");
+                break;
+            case '\u00a0':
+                append("&nbsp;");
+                break;
+            case '<':
+                append(inAttribute ? "<" : "&lt;");
+                break;
+            case '>':
+                append(inAttribute ? ">" : "&gt;");
+                break;
+            case '"':
+                append(inAttribute ? "&quot;" : "\"");
+                break;
+            default:
+                append(c);
+            }
+        }
+    }
+
+    private static boolean isBlank(String s) {
+        for (int k = 0; k < s.length(); k++)
+            if (!isWhitespace(s.charAt(k)))
+                return false;
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private void append(char c) throws IOException {
+        if (length == buffer.length) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+        buffer[length++] = c;
+    }
+
+    private void append(String s) throws IOException {
+        int n = s.length();
+        int k = 0;
+        while (k < n) {
+            if (length == buffer.length) {
+                out.write(buffer, 0, length);
+                length = 0;
+            }
+            int count = Math.min(n - k, buffer.length - length);
+            s.getChars(k, k + count, buffer, length);
+            length += count;
+            k += count;
+        }
+    }
+
+}
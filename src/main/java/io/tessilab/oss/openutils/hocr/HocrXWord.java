@@ -18,6 +18,7 @@ package io.tessilab.oss.openutils.hocr;
 import io.tessilab.oss.openutils.StringUtils;
 
 import java.awt.Rectangle;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -70,7 +71,7 @@ public class HocrXWord extends HocrSection {
         this.cachedValues = new HashMap<>();
         String trimmed = text.trim();
         cachedValues.put(REAL_VALUE, trimmed);
-        cachedValues.put(NORMALIZED_VALUE, StringUtils.cleanUpString(trimmed, true, false, true, new String[] { "€" }));
+        cachedValues.put(NORMALIZED_VALUE, StringUtils.normalizeWord(trimmed));
         this.confidence = conf;
         isVoid = "".equals(trimmed);
         origin = this;
@@ -91,7 +92,7 @@ public class HocrXWord extends HocrSection {
             String temp = element.attr(HTMLConstants.CONFIDENCE);
             if (temp == "") // TODO: temp fix to read legacy hocr
                 temp = element.attr("confidence");
-            confidence = Double.parseDouble(temp); // switch to int ?
+            confidence = HocrTitle.parseDouble(temp); // switch to int ?
         } catch (NumberFormatException e) {
             throw new HocrSyntaxException("Confidence not found");
         }
@@ -99,7 +100,7 @@ public class HocrXWord extends HocrSection {
         // Read the text value
         String text = element.text().trim(); // combined text of its children
         cachedValues.put(REAL_VALUE, text);
-        cachedValues.put(NORMALIZED_VALUE, StringUtils.cleanUpString(text, true, false, true, new String[] { "€" }));
+        cachedValues.put(NORMALIZED_VALUE, StringUtils.normalizeWord(text));
         isVoid = "".equals(text);
         origin = this;
     }
@@ -277,7 +278,7 @@ public class HocrXWord extends HocrSection {
             w.bbox = new Rectangle(x1, this.bbox.y, width, this.bbox.height);
             String temp = this.getValue().substring(splitBegin, splitEnd);
             w.cachedValues.put(REAL_VALUE, temp);
-            w.cachedValues.put(NORMALIZED_VALUE, StringUtils.cleanUpString(temp, true, false, true, new String[] { "€" }));
+            w.cachedValues.put(NORMALIZED_VALUE, StringUtils.normalizeWord(temp));
             wordsResult.add(w);
         }
 
@@ -405,4 +406,15 @@ public class HocrXWord extends HocrSection {
         return elem;
     }
 
+    @Override
+    void writeHtml(HocrWriter out) throws IOException {
+        out.startElement(getElementTag());
+        out.attribute(HTMLConstants.CLASS, getElementClassAttribute());
+        out.attribute(HTMLConstants.ID, getId());
+        out.attribute(HTMLConstants.CONFIDENCE, Integer.toString((int) getConfidence()));
+        out.attribute(HTMLConstants.TITLE, getBBoxHocrString());
+        out.text(getValue());
+        out.endElement();
+    }
+
 }
@@ -18,6 +18,7 @@ package io.tessilab.oss.openutils.hocr;
 import io.tessilab.oss.openutils.bbox.BBoxable;
 
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 
 import org.jsoup.nodes.Element;
 import org.jsoup.parser.Tag;
@@ -57,4 +58,14 @@ public class NTContent implements BBoxable {
         return elem;
     }
 
+    /**
+     * Writes the html of {@link #toHtmlElement()}.</br> Visibility: package
+     */
+    void writeHtml(HocrWriter out) throws IOException {
+        out.startElement(HTMLConstants.TAG_DIV);
+        out.attribute(HTMLConstants.CLASS, ContentType.toHocrString(type));
+        out.attribute(HTMLConstants.TITLE, getBBoxHocrString());
+        out.endElement();
+    }
+
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+import io.tessilab.oss.openutils.distance.words.MyersLevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestBKTree {
+
+    /**
+     * @return The edges of the tree, as "parent key child", sorted.
+     */
+    private static <E> List<String> edges(BKTree<E> tree) {
+        List<E> terms = new ArrayList<>();
+        List<String> edges = new ArrayList<>();
+        tree.visitNodes((term, parent, key) -> {
+            edges.add((parent < 0 ? "" : terms.get(parent)) + " " + key + " " + term);
+            terms.add(term);
+        });
+        Collections.sort(edges);
+        return edges;
+    }
+
+    @Test
+    public void testBuildIsSequential() {
+        Random random = new Random(51);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 3 * BKTree.SEQUENTIAL_BUILD_THRESHOLD);
+        // duplicates are kept, as with add
+        words.add(words.get(10));
+
+        LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+        BKTree<String> sequential = new BKTree<>(ld);
+        words.forEach(sequential::add);
+        BKTree<String> built = BKTree.build(words.stream(), ld);
+        assertEquals(words.size(), edges(built).size());
+        assertEquals(edges(sequential), edges(built));
+
+        MyersLevenshteinDistance myers = new MyersLevenshteinDistance();
+        IntBKTree<String> intSequential = new IntBKTree<>(myers);
+        words.forEach(intSequential::add);
+        IntBKTree<String> intBuilt = IntBKTree.build(words.stream(), myers);
+        assertEquals(edges(intSequential), edges(intBuilt));
+
+        for (int k = 0; k < 50; k++) {
+            String query = TestLevenshteinDictionary.randomWord(random);
+            assertEquals(sequential.findAllWithin(query, 2), built.findAllWithin(query, 2));
+            assertEquals(intSequential.findAllWithin(query, 2), intBuilt.findAllWithin(query, 2));
+        }
+    }
+
+    @Test
+    public void testFindBestMatch() {
+        for (BKTree<String> tree : Arrays.asList(new BKTree<>(new LevenshteinDistance(1e-3)), new IntBKTree<>(new MyersLevenshteinDistance()))) {
+            assertNull(tree.findBestMatch("total", 2));
+            assertNull(tree.findBestWordMatch("total"));
+            assertTrue(tree.findBestWordMatchWithDistance("total").isEmpty());
+            tree.add("total");
+            tree.add("facture");
+            assertEquals(new Match<>("total", 1), tree.findBestMatch("tota1", 2));
+            assertNull(tree.findBestMatch("tot", 1));
+            assertEquals(1, tree.find("tota1"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        Random random = new Random(52);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 2000);
+        List<String> queries = TestLevenshteinDictionary.randomWords(random, 200);
+        for (BKTree<String> tree : Arrays.asList(BKTree.build(words.stream(), new LevenshteinDistance(1e-3)),
+                IntBKTree.build(words.stream(), new MyersLevenshteinDistance()))) {
+            List<Match<String>> expected = new ArrayList<>();
+            for (String query : queries)
+                expected.add(tree.findBestMatch(query, 2));
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < queries.size(); i++) {
+                            assertEquals(expected.get(i), tree.findBestMatch(queries.get(i), 2));
+                            assertEquals(expected.get(i) == null ? null : expected.get(i).getTerm(), tree.findBestWordMatchWithinDistance(queries.get(i), 2));
+                        }
+                        return true;
+                    }));
+                }
+                for (Future<Boolean> f : futures)
+                    assertTrue(f.get());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        Random random = new Random(54);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 1000).stream().distinct().collect(Collectors.toList());
+        LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+        for (BKTree<String> tree : Arrays.asList(new BKTree<>(ld), new IntBKTree<>(ld))) {
+            tree.setCompaction(1, null);
+            words.forEach(tree::add);
+            List<String> live = new ArrayList<>(words);
+            for (int k = 0; k < words.size() / 2; k++)
+                assertTrue(tree.remove(live.remove(random.nextInt(live.size()))));
+            assertEquals(live.size(), tree.size());
+            assertEquals(words.size() / 2, tree.getDeadCount());
+            checkQueries(random, tree, live);
+
+            // a removed word is live again
+            String removed = words.stream().filter(w -> !live.contains(w)).findFirst().get();
+            tree.add(removed);
+            live.add(removed);
+            assertEquals(words.size() / 2 - 1, tree.getDeadCount());
+            assertTrue(tree.findAllWithin(removed, 0).size() == 1);
+
+            tree.compact();
+            assertEquals(0, tree.getDeadCount());
+            assertEquals(live.size(), tree.size());
+            checkQueries(random, tree, live);
+        }
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        Random random = new Random(55);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 3000).stream().distinct().collect(Collectors.toList());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        BKTree<String> tree = new IntBKTree<>(new MyersLevenshteinDistance());
+        tree.setCompaction(0.1, executor);
+        List<String> live = new ArrayList<>();
+        for (String word : words) {
+            tree.add(word);
+            live.add(word);
+            // the additions and removals go on while the tree is compacted
+            if (random.nextInt(3) == 0)
+                assertTrue(tree.remove(live.remove(random.nextInt(live.size()))));
+        }
+        // a compaction finishing with too many removed terms starts another one
+        for (int k = 0; k < 100 && tree.getDeadCount() > 0.1 * (tree.size() + tree.getDeadCount()); k++)
+            executor.submit(() -> {}).get();
+        executor.shutdown();
+        assertTrue(tree.getDeadCount() <= 0.1 * (tree.size() + tree.getDeadCount()));
+        assertEquals(live.size(), tree.size());
+        checkQueries(random, tree, live);
+    }
+
+    private static void checkQueries(Random random, BKTree<String> tree, List<String> live) {
+        LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+        for (int k = 0; k < 100; k++) {
+            String query = TestLevenshteinDictionary.randomWord(random);
+            int threshold = random.nextInt(3);
+            List<String> expected = live.stream().filter(w -> ld.getDistanceInt(query, w) <= threshold).sorted().collect(Collectors.toList());
+            List<String> found = tree.findAllWithin(query, threshold).stream().map(Match::getTerm).sorted().collect(Collectors.toList());
+            assertEquals(query, expected, found);
+            int best = live.stream().mapToInt(w -> ld.getDistanceInt(query, w)).min().getAsInt();
+            assertEquals(query, best, tree.findBestMatch(query, Integer.MAX_VALUE).getDistance(), 1e-9);
+            assertEquals(query, Math.min(5, live.size()), tree.findBestMatches(query, 5).size());
+        }
+    }
+
+    @Test
+    public void testBuildEmpty() {
+        BKTree<String> tree = BKTree.build(new ArrayList<String>().stream(), new LevenshteinDistance(1e-3));
+        assertTrue(tree.findAllWithin("total", 3).isEmpty());
+        tree.add("total");
+        assertEquals("total", tree.findBestWordMatch("tota1"));
+    }
+
+}
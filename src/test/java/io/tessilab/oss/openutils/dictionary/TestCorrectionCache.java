@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestCorrectionCache {
+
+    @Test
+    public void testHits() {
+        CorrectionCache cache = new CorrectionCache(100);
+        String[] calls = new String[1];
+        CorrectionCache.Search search = (word, distance) -> {
+            calls[0] = word;
+            return word.toUpperCase();
+        };
+        assertEquals("TOTAL", cache.get("total", 2, search));
+        assertEquals("total", calls[0]);
+        calls[0] = null;
+        assertEquals("TOTAL", cache.get("total", 2, search));
+        assertNull(calls[0]);
+        // the distance is part of the key
+        assertEquals("TOTAL", cache.get("total", 1, search));
+        assertEquals("total", calls[0]);
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaximumSize() {
+        for (int maximumSize : new int[] { 1, 10, 1000 }) {
+            CorrectionCache cache = new CorrectionCache(maximumSize);
+            for (int i = 0; i < 5000; i++)
+                cache.get(Integer.toString(i), 1, (word, distance) -> word);
+            assertTrue(cache.size() <= maximumSize);
+            assertTrue(cache.size() > maximumSize / 2);
+        }
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        CorrectionCache cache = new CorrectionCache(10, 20, TimeUnit.MILLISECONDS);
+        cache.get("total", 1, (word, distance) -> word);
+        cache.get("total", 1, (word, distance) -> word);
+        assertEquals(1, cache.getHitCount());
+        Thread.sleep(50);
+        cache.get("total", 1, (word, distance) -> word);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new CorrectionCache(0);
+    }
+
+    @Test
+    public void testDictionaries() {
+        Random random = new Random(61);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 300);
+        List<String> queries = TestLevenshteinDictionary.randomWords(random, 100);
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary(), new LevenshteinDictionary(), new WeightedDictionary() }) {
+            words.forEach(dico::addNewWord);
+            CorrectionCache cache = new CorrectionCache(1000);
+            dico.setCache(cache);
+            for (int pass = 0; pass < 2; pass++)
+                for (String query : queries)
+                    dico.findClosestWord(query, 2);
+            assertEquals(queries.stream().distinct().count(), cache.getMissCount());
+            assertEquals(0.5, cache.getHitRate(), 0.05);
+
+            // a new word is the closest one to itself
+            String query = queries.get(0);
+            dico.findClosestWord(query + "x");
+            dico.addNewWord(query + "x");
+            assertEquals(0, cache.size());
+            assertEquals(query + "x", dico.findClosestWord(query + "x"));
+            assertEquals(query + "x", dico.findClosestWord(query + "x"));
+
+            dico.setCache(null);
+            assertEquals(query + "x", dico.findClosestWord(query + "x"));
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.Distance;
+import io.tessilab.oss.openutils.distance.words.IntDistance;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDictionary {
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the distance between the lengths of the words
+    private static final IntDistance<String> LENGTH_DISTANCE = new IntDistance<String>() {
+        @Override
+        public int getDistanceInt(String s1, String s2) {
+            return Math.abs(s1.length() - s2.length());
+        }
+
+        @Override
+        public double getDistance(String s1, String s2) {
+            return getDistanceInt(s1, s2);
+        }
+    };
+
+    private void fill(Dictionary dico, List<String> words) {
+        words.forEach(dico::addNewWord);
+    }
+
+    @Test
+    public void testBasics() {
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary() }) {
+            assertTrue(dico.isEmpty());
+            assertNull(dico.findClosestWord("total"));
+            assertTrue(dico.findAllWithin("total", 2).isEmpty());
+            assertTrue(dico.findClosestWords("total", 2).isEmpty());
+
+            dico.addNewWord("total");
+            dico.addNewWord("totaux");
+            dico.addNewWord("facture");
+            assertEquals(3, (int) dico.size());
+            assertEquals("total", dico.findClosestWord("tota1"));
+            assertEquals("facture", dico.findClosestWord("factvre", 1));
+            assertNull(dico.findClosestWord("fact", 1));
+        }
+    }
+
+    @Test
+    public void testFindAllWithin() {
+        Random random = new Random(21);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 500);
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary() }) {
+            fill(dico, words);
+            for (int k = 0; k < 100; k++) {
+                String query = TestLevenshteinDictionary.randomWord(random);
+                int threshold = random.nextInt(4);
+                List<Match<String>> expected = bruteForce(words, query).stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList());
+                assertEquals(expected, dico.findAllWithin(query, threshold));
+            }
+        }
+    }
+
+    @Test
+    public void testFindClosestWords() {
+        Random random = new Random(22);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 500);
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary(), new LevenshteinDictionary() }) {
+            fill(dico, words);
+            for (int k = 0; k < 100; k++) {
+                String query = TestLevenshteinDictionary.randomWord(random);
+                int nb = 1 + random.nextInt(10);
+                // the ties at the last position keep the first words alphabetically
+                List<Match<String>> expected = bruteForce(words, query).stream().limit(nb).collect(Collectors.toList());
+                assertEquals(expected, dico.findClosestWords(query, nb));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindClosestWordsKO() {
+        new Dictionary().findClosestWords("total", 0);
+    }
+
+    private List<Match<String>> bruteForce(List<String> words, String query) {
+        return words.stream().distinct().map(w -> new Match<>(w, (double) ld.getDistanceInt(query, w))).sorted(Match.byDistanceThenTerm()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCorrectAll() {
+        Random random = new Random(23);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 500);
+        List<String> queries = TestLevenshteinDictionary.randomWords(random, 300);
+        queries.addAll(queries.subList(0, 100));
+        queries.add(words.get(0));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary(), new LevenshteinDictionary(), new WeightedDictionary() }) {
+                fill(dico, words);
+                Map<String, String> corrections = dico.correctAll(queries, 2, executor);
+                assertEquals(new HashSet<>(queries), corrections.keySet());
+                for (String query : queries)
+                    assertEquals(dico.findClosestWord(query, 2), corrections.get(query));
+                assertEquals(words.get(0), dico.correctAll(queries).get(words.get(0)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(new Dictionary().correctAll(queries).values().stream().allMatch(c -> c == null));
+    }
+
+    @Test
+    public void testInitFromFileKeepsTheTree() throws IOException {
+        File file = folder.newFile("words.txt");
+        Files.write(file.toPath(), Arrays.asList("a abc", "abcdefgh"));
+
+        Dictionary dico = new Dictionary(file.getPath()) {
+            @Override
+            protected void initWordTree() {
+                wordTree = new BKTree<>(LENGTH_DISTANCE);
+            }
+        };
+        assertSame(LENGTH_DISTANCE, dico.wordTree.getDistance());
+        assertEquals(BKTree.class, dico.wordTree.getClass());
+        assertEquals("abc", dico.findClosestWord("xyz"));
+        assertEquals("abcdefgh", dico.findClosestWord("zzzzzzz"));
+
+        Dictionary intDico = new IntBKTreeDictionary(file.getPath()) {
+            @Override
+            protected void initWordTree() {
+                wordTree = new IntBKTree<>(LENGTH_DISTANCE);
+            }
+        };
+        Distance<String> distance = intDico.wordTree.getDistance();
+        assertSame(LENGTH_DISTANCE, distance);
+        assertEquals(IntBKTree.class, intDico.wordTree.getClass());
+        assertEquals("abc", intDico.findClosestWord("xyz"));
+    }
+
+}
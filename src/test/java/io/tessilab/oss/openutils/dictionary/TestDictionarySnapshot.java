@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDictionarySnapshot {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Dictionary writeAndRead(Dictionary dico) throws IOException {
+        String path = folder.newFile().getPath();
+        DictionarySnapshot.write(dico, path);
+        return DictionarySnapshot.read(path);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(31);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 1000);
+        words.add("\u00e9t\u00e9");
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary(), new LevenshteinDictionary() }) {
+            words.forEach(dico::addNewWord);
+            Dictionary read = writeAndRead(dico);
+
+            assertSame(dico.getClass(), read.getClass());
+            assertEquals(dico.getWordStreamSorted().collect(Collectors.toList()), read.getWordStreamSorted().collect(Collectors.toList()));
+            assertTrue(read.contains("\u00e9t\u00e9"));
+            for (int k = 0; k < 100; k++) {
+                String query = TestLevenshteinDictionary.randomWord(random);
+                assertEquals(dico.findAllWithin(query, 2), read.findAllWithin(query, 2));
+                assertEquals(dico.findClosestWord(query, 3), read.findClosestWord(query, 3));
+            }
+
+            // the read dictionary can still be modified
+            read.addNewWord("snapshot");
+            assertEquals("snapshot", read.findClosestWord("snapshot", 0));
+        }
+    }
+
+    @Test
+    public void testRemovedWords() throws IOException {
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary(), new LevenshteinDictionary() }) {
+            dico.setCompaction(1, null);
+            TestLevenshteinDictionary.randomWords(new Random(32), 200).forEach(dico::addNewWord);
+            dico.addNewWord("total");
+            dico.findClosestWord("tota1");
+            assertTrue(dico.removeWord("total"));
+            dico.addNewWord("snapshot");
+            Dictionary read = writeAndRead(dico);
+            // writing does not compact the dictionary
+            assertEquals(1, deadCount(dico));
+            assertFalse(read.contains("total"));
+            assertTrue(read.contains("snapshot"));
+            assertEquals(dico.getWordStreamSorted().collect(Collectors.toList()), read.getWordStreamSorted().collect(Collectors.toList()));
+            assertEquals(dico.findClosestWord("tota1"), read.findClosestWord("tota1"));
+        }
+    }
+
+    private static int deadCount(Dictionary dico) {
+        if (dico instanceof LevenshteinDictionary)
+            return ((LevenshteinDictionary) dico).getDeadCount();
+        return dico.wordTree.getDeadCount();
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        for (Dictionary dico : new Dictionary[] { new Dictionary(), new IntBKTreeDictionary(), new LevenshteinDictionary() }) {
+            Dictionary read = writeAndRead(dico);
+            assertTrue(read.isEmpty());
+            read.addNewWord("total");
+            assertEquals("total", read.findClosestWord("tota1"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "total facture".getBytes("UTF-8"));
+        DictionarySnapshot.read(file.getPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedClass() throws IOException {
+        DictionarySnapshot.write(new Dictionary() {
+        }, folder.newFile().getPath());
+    }
+
+}
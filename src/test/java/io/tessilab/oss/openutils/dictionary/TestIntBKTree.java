@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.IntDistance;
+import io.tessilab.oss.openutils.distance.words.MyersLevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestIntBKTree {
+
+    // a metric whose distances are multiples of 7, so most child indices are
+    // left empty
+    private static final IntDistance<Integer> SPARSE_DISTANCE = new IntDistance<Integer>() {
+        @Override
+        public int getDistanceInt(Integer i1, Integer i2) {
+            return 7 * Math.abs(i1 - i2);
+        }
+
+        @Override
+        public double getDistance(Integer i1, Integer i2) {
+            return getDistanceInt(i1, i2);
+        }
+    };
+
+    @Test
+    public void testWords() {
+        Random random = new Random(61);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 1500);
+        // long words, far from the others
+        for (int k = 0; k < 100; k++)
+            words.add(TestLevenshteinDictionary.randomWord(random) + TestLevenshteinDictionary.randomWord(random) + TestLevenshteinDictionary.randomWord(random));
+        MyersLevenshteinDistance distance = new MyersLevenshteinDistance();
+        checkTree(random, words.stream().distinct().collect(Collectors.toList()), distance, () -> TestLevenshteinDictionary.randomWord(random), 5);
+    }
+
+    @Test
+    public void testSparseChildren() {
+        Random random = new Random(62);
+        List<Integer> terms = random.ints(800, 0, 2000).boxed().distinct().collect(Collectors.toList());
+        checkTree(random, terms, SPARSE_DISTANCE, () -> random.nextInt(2100) - 50, 150);
+    }
+
+    /**
+     * Removes a fifth of the terms (the removed ones stay in the tree), then
+     * compares the queries with a scan of the remaining terms.
+     */
+    private static <E> void checkTree(Random random, List<E> terms, IntDistance<E> distance, Supplier<E> queries, int maxThreshold) {
+        IntBKTree<E> tree = new IntBKTree<>(distance);
+        tree.setCompaction(1, null);
+        terms.forEach(tree::add);
+        List<E> live = new ArrayList<>(terms);
+        for (int k = 0; k < terms.size() / 5; k++)
+            assertTrue(tree.remove(live.remove(random.nextInt(live.size()))));
+        assertEquals(live.size(), tree.size());
+
+        for (int k = 0; k < 300; k++) {
+            E query = queries.get();
+            int threshold = random.nextInt(maxThreshold + 1);
+            List<Match<E>> expected = live.stream().map(t -> new Match<>(t, distance.getDistanceInt(query, t))).sorted(BKTree.byDistanceThenTerm())
+                    .collect(Collectors.toList());
+
+            Map<E, Integer> within = new HashMap<>();
+            for (Match<E> match : expected)
+                if (match.getDistance() <= threshold)
+                    within.put(match.getTerm(), (int) match.getDistance());
+            assertEquals(within, tree.query(query, threshold));
+
+            Match<E> best = tree.findBestMatch(query, threshold);
+            if (expected.get(0).getDistance() > threshold) {
+                assertNull(best);
+            } else {
+                assertEquals(expected.get(0).getDistance(), best.getDistance(), 0);
+                assertEquals(best.getDistance(), distance.getDistanceInt(query, best.getTerm()), 0);
+                assertTrue(live.contains(best.getTerm()));
+            }
+
+            int nb = 1 + random.nextInt(10);
+            assertEquals(expected.subList(0, nb), tree.findBestMatches(query, nb));
+        }
+    }
+
+}
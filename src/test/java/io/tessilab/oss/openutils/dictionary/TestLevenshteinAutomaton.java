@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestLevenshteinAutomaton {
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    @Test
+    public void testBasics() {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton("total", 1);
+        assertEquals(0, automaton.distance("total"));
+        assertEquals(1, automaton.distance("tota1"));
+        assertEquals(1, automaton.distance("tota"));
+        assertEquals(2, automaton.distance("totaux"));
+        assertEquals(2, automaton.distance(""));
+
+        int state = automaton.step(automaton.getStartState(), 'x');
+        assertFalse(automaton.isAccepting(state));
+        assertEquals(LevenshteinAutomaton.DEAD_STATE, automaton.step(state, 'y'));
+        LevenshteinAutomaton shortWord = new LevenshteinAutomaton("ab", 2);
+        assertTrue(shortWord.isAccepting(shortWord.getStartState()));
+    }
+
+    @Test
+    public void testDistance() {
+        Random random = new Random(81);
+        for (int k = 0; k < 300; k++) {
+            String word = TestLevenshteinDictionary.randomWord(random);
+            for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+                LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, maxDistance);
+                for (int i = 0; i < 20; i++) {
+                    String other = TestLevenshteinDictionary.randomWord(random);
+                    assertEquals(word + " " + other, Math.min(ld.getDistanceInt(word, other), maxDistance + 1), automaton.distance(other));
+                }
+                assertEquals(0, automaton.distance(word));
+            }
+        }
+    }
+
+    @Test
+    public void testLazyStates() {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton("facture", 2);
+        assertEquals(1, automaton.getNbOfStates());
+        assertEquals(1, automaton.distance("factur"));
+        int built = automaton.getNbOfStates();
+        assertTrue(built <= "factur".length() + 1);
+        // the transitions already built are reused
+        assertEquals(1, automaton.distance("factur"));
+        assertEquals(built, automaton.getNbOfStates());
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        Random random = new Random(83);
+        String word = TestLevenshteinDictionary.randomWord(random) + TestLevenshteinDictionary.randomWord(random);
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, 3);
+        List<String> others = TestLevenshteinDictionary.randomWords(random, 2000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (String other : others)
+                        assertEquals(word + " " + other, Math.min(ld.getDistanceInt(word, other), 4), automaton.distance(other));
+                    return true;
+                }));
+            }
+            for (Future<Boolean> f : futures)
+                assertTrue(f.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFindAll() {
+        Random random = new Random(82);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 1000);
+        LevenshteinDictionary dico = new LevenshteinDictionary();
+        words.forEach(dico::addNewWord);
+        for (int k = 0; k < 100; k++) {
+            String query = TestLevenshteinDictionary.randomWord(random);
+            int maxDistance = random.nextInt(4);
+            List<Match<String>> expected = words.stream().distinct().map(w -> new Match<>(w, ld.getDistanceInt(query, w)))
+                    .filter(m -> m.getDistance() <= maxDistance).sorted(Match.byDistanceThenTerm()).collect(Collectors.toList());
+            assertEquals(expected, dico.findAll(new LevenshteinAutomaton(query, maxDistance)));
+        }
+    }
+
+}
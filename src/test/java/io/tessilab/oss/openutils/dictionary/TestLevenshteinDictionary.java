@@ -0,0 +1,366 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.ConfusionTable;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+import io.tessilab.oss.openutils.distance.words.WeightedLevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestLevenshteinDictionary {
+
+    private static final List<String> WORDS = Arrays.asList("facture", "factures", "total", "montant", "date", "client", "tva", "ttc", "ht", "remise", "quantite", "prix", "unitaire", "reference", "designation");
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    private LevenshteinDictionary buildDictionary(List<String> words) {
+        LevenshteinDictionary dico = new LevenshteinDictionary();
+        words.forEach(dico::addNewWord);
+        return dico;
+    }
+
+    @Test
+    public void testBasics() {
+        LevenshteinDictionary dico = buildDictionary(WORDS);
+        assertEquals(WORDS.size(), (int) dico.size());
+        assertTrue(dico.contains("total"));
+        assertEquals("total", dico.findClosestWord("total"));
+        assertEquals("total", dico.findClosestWord("tota1"));
+        assertEquals("facture", dico.findClosestWord("factvre", 1));
+        assertEquals("montant", dico.findClosestWord("m0ntamt", 2));
+        assertNull(dico.findClosestWord("m0ntamt", 1));
+        assertNull(dico.findClosestWord("tota1", 0));
+    }
+
+    @Test
+    public void testCompiledTrie() {
+        LevenshteinDictionary dico = buildDictionary(Arrays.asList("ab", "a", "abc", "b", "ba"));
+        CompiledTrie trie = dico.getTrie();
+        // root, a, b, ab, ba, abc
+        assertEquals(6, trie.getNbOfNodes());
+        assertEquals(3, trie.maxDepth);
+
+        int a = trie.child(0, 'a');
+        int ab = trie.child(a, 'b');
+        assertEquals("a", trie.word(a));
+        assertEquals("ab", trie.word(ab));
+        assertEquals("abc", trie.word(trie.child(ab, 'c')));
+        assertEquals("ba", trie.word(trie.child(trie.child(0, 'b'), 'a')));
+        assertNull(trie.word(0));
+        assertEquals(-1, trie.child(a, 'a'));
+
+        // the trie is compiled again after a modification
+        dico.removeWord("ab");
+        assertNull(dico.getTrie().word(dico.getTrie().child(a, 'b')));
+    }
+
+    @Test
+    public void testEmpty() {
+        LevenshteinDictionary dico = new LevenshteinDictionary();
+        assertNull(dico.findClosestWord("total"));
+    }
+
+    @Test
+    public void testModifyAfterQuery() {
+        LevenshteinDictionary dico = buildDictionary(WORDS);
+        assertEquals("total", dico.findClosestWord("totaux", 2));
+
+        dico.addNewWord("totaux");
+        assertEquals("totaux", dico.findClosestWord("totaax", 2));
+        assertTrue(dico.removeWord("totaux"));
+        assertEquals("total", dico.findClosestWord("totaux", 2));
+
+        // a longer word than all the previous ones
+        dico.addNewWord("remboursements");
+        assertEquals("remboursements", dico.findClosestWord("rembourssements", 2));
+    }
+
+    @Test
+    public void testAddAfterQuery() {
+        Random random = new Random(16);
+        List<String> words = randomWords(random, 1000).stream().distinct().collect(Collectors.toList());
+        LevenshteinDictionary dico = buildDictionary(words);
+        dico.finalizeTree();
+        CompiledTrie compiled = dico.getTrie();
+        WeightedLevenshteinDistance weighted = new WeightedLevenshteinDistance(ConfusionTable.ocr());
+
+        List<String> live = new ArrayList<>(words);
+        for (int k = 0; k < 3 * LevenshteinDictionary.MIN_ADDED_WORDS; k++) {
+            String added = randomWord(random);
+            if (dico.addNewWord(added))
+                live.add(added);
+            if (k % 10 == 0 && dico.removeWord(added))
+                live.remove(added);
+
+            String query = randomWord(random);
+            int threshold = random.nextInt(5);
+            checkResult(live, query, threshold, dico.findClosestWord(query, threshold));
+            List<Match<String>> expected = bruteForce(live, query);
+            assertEquals(expected.stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList()), dico.findAllWithin(query, threshold));
+            assertEquals(expected.stream().limit(5).collect(Collectors.toList()), dico.findClosestWords(query, 5));
+            Match<String> best = live.stream().map(w -> new Match<>(w, weighted.getDistance(w, query))).filter(m -> m.getDistance() <= threshold)
+                    .min(Match.byDistanceThenTerm()).orElse(null);
+            assertEquals(query, best == null ? null : best.getTerm(), dico.findClosestWord(query, threshold, weighted));
+            // the trie is compiled again only once enough words were added
+            if (k < LevenshteinDictionary.MIN_ADDED_WORDS)
+                assertSame(compiled, dico.getSearchedState().trie);
+        }
+        assertEquals(live.size(), (int) dico.size());
+        assertEquals(live.size(), dico.getTrie().words.length);
+    }
+
+    @Test
+    public void testAddKeepsTheTrie() {
+        LevenshteinDictionary dico = buildDictionary(WORDS);
+        CompiledTrie compiled = dico.getTrie();
+        dico.addNewWord("totaux");
+        assertEquals("totaux", dico.findClosestWord("totaax", 2));
+        assertEquals(new Match<>("totaux", 1.0), dico.findClosestWords("totaax", 1).get(0));
+        dico.addNewWord("montants");
+        assertEquals("montants", dico.findClosestWord("montamts", 2));
+        assertTrue(dico.removeWord("montants"));
+        assertEquals("montant", dico.findClosestWord("montamts", 2));
+        assertEquals(0, dico.getDeadCount());
+
+        // the searches do not compile the trie again for a few added words
+        dico.findAllWithin("total", 3);
+        assertSame(compiled, dico.getSearchedState().trie);
+        // the full trie has them
+        assertEquals(WORDS.size() + 1, dico.getTrie().words.length);
+    }
+
+    @Test
+    public void testRemoveWords() throws Exception {
+        Random random = new Random(15);
+        List<String> words = randomWords(random, 2000).stream().distinct().collect(Collectors.toList());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LevenshteinDictionary dico = buildDictionary(words);
+        dico.setCompaction(0.2, executor);
+        dico.finalizeTree();
+        List<String> live = new ArrayList<>(words);
+        for (int k = 0; k < words.size() / 2; k++) {
+            assertTrue(dico.removeWord(live.remove(random.nextInt(live.size()))));
+            if (k % 100 == 0) {
+                String query = randomWord(random);
+                checkResult(live, query, 2, dico.findClosestWord(query, 2));
+            }
+        }
+        // a compaction finishing with too many removed words starts another one
+        for (int k = 0; k < 100 && dico.getDeadCount() > 0.2 * (live.size() + dico.getDeadCount()); k++)
+            executor.submit(() -> {}).get();
+        executor.shutdown();
+        assertTrue(dico.getDeadCount() <= 0.2 * (live.size() + dico.getDeadCount()));
+        for (int k = 0; k < 100; k++) {
+            String query = randomWord(random);
+            int threshold = random.nextInt(4);
+            List<Match<String>> expected = bruteForce(live, query).stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList());
+            assertEquals(expected, dico.findAllWithin(query, threshold));
+            checkResult(live, query, threshold, dico.findClosestWord(query, threshold));
+        }
+    }
+
+    @Test
+    public void testQueriesDuringCompaction() throws Exception {
+        Random random = new Random(17);
+        List<String> live = randomWords(random, 3000).stream().distinct().collect(Collectors.toList());
+        ExecutorService compactor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        LevenshteinDictionary dico = buildDictionary(live);
+        dico.setCompaction(0.02, compactor);
+        dico.finalizeTree();
+        try {
+            for (int round = 0; round < 10; round++) {
+                // added words, merged into the trie by the next compaction
+                for (int k = 0; k < 20; k++) {
+                    String word = randomWord(random);
+                    if (dico.addNewWord(word))
+                        live.add(word);
+                }
+                // enough removals to start a compaction in the background
+                for (int k = 0; k < 0.03 * live.size(); k++)
+                    assertTrue(dico.removeWord(live.remove(random.nextInt(live.size()))));
+
+                List<String> words = new ArrayList<>(live);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    long seed = random.nextLong();
+                    futures.add(executor.submit(() -> {
+                        Random queryRandom = new Random(seed);
+                        for (int k = 0; k < 30; k++) {
+                            String query = randomWord(queryRandom);
+                            int threshold = 1 + queryRandom.nextInt(3);
+                            List<Match<String>> expected = bruteForce(words, query);
+                            assertEquals(expected.stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList()), dico.findAllWithin(query, threshold));
+                            assertEquals(expected.stream().limit(3).collect(Collectors.toList()), dico.findClosestWords(query, 3));
+                        }
+                        return true;
+                    }));
+                }
+                for (Future<Boolean> f : futures)
+                    assertTrue(f.get());
+                compactor.submit(() -> {}).get();
+            }
+        } finally {
+            executor.shutdown();
+            compactor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOptimalDistance() {
+        Random random = new Random(11);
+        List<String> words = randomWords(random, 500);
+        LevenshteinDictionary dico = buildDictionary(words);
+        for (int k = 0; k < 300; k++) {
+            String query = randomWord(random);
+            int threshold = 1 + random.nextInt(3);
+            checkResult(words, query, threshold, dico.findClosestWord(query, threshold));
+        }
+    }
+
+    @Test
+    public void testFindAllWithin() {
+        LevenshteinDictionary dico = buildDictionary(WORDS);
+        List<Match<String>> matches = dico.findAllWithin("factur", 2);
+        assertEquals(2, matches.size());
+        assertEquals(new Match<>("facture", 1.0), matches.get(0));
+        assertEquals(new Match<>("factures", 2.0), matches.get(1));
+        assertTrue(dico.findAllWithin("zzzzzzzz", 2).isEmpty());
+
+        Random random = new Random(13);
+        List<String> words = randomWords(random, 500);
+        dico = buildDictionary(words);
+        for (int k = 0; k < 100; k++) {
+            String query = randomWord(random);
+            int threshold = random.nextInt(4);
+            List<Match<String>> expected = bruteForce(words, query).stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList());
+            assertEquals(expected, dico.findAllWithin(query, threshold));
+        }
+    }
+
+    @Test
+    public void testFindClosestWords() {
+        LevenshteinDictionary dico = buildDictionary(WORDS);
+        List<Match<String>> matches = dico.findClosestWords("tt", 3);
+        assertEquals(3, matches.size());
+        assertEquals(new Match<>("ht", 1.0), matches.get(0));
+        assertEquals(new Match<>("ttc", 1.0), matches.get(1));
+        assertEquals(new Match<>("tva", 2.0), matches.get(2));
+        assertEquals(WORDS.size(), dico.findClosestWords("tt", 100).size());
+
+        Random random = new Random(14);
+        List<String> words = randomWords(random, 500);
+        dico = buildDictionary(words);
+        for (int k = 0; k < 100; k++) {
+            String query = randomWord(random);
+            int nb = 1 + random.nextInt(10);
+            List<Match<String>> expected = bruteForce(words, query).stream().limit(nb).collect(Collectors.toList());
+            assertEquals(expected, dico.findClosestWords(query, nb));
+        }
+    }
+
+    private List<Match<String>> bruteForce(List<String> words, String query) {
+        return words.stream().distinct().map(w -> new Match<>(w, (double) ld.getDistanceInt(query, w))).sorted(Match.byDistanceThenTerm()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        Random random = new Random(12);
+        List<String> words = randomWords(random, 2000);
+        LevenshteinDictionary dico = buildDictionary(words);
+        dico.finalizeTree();
+        List<String> queries = randomWords(random, 300);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (String query : queries)
+                        checkResult(words, query, 2, dico.findClosestWord(query, 2));
+                    return true;
+                }));
+            }
+            for (Future<Boolean> f : futures)
+                assertTrue(f.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWeightedDistance() {
+        Random random = new Random(13);
+        List<String> words = randomWords(random, 500);
+        words.addAll(Arrays.asList("modern", "rnodern", "c1ear", "clear", "dear"));
+        LevenshteinDictionary dico = buildDictionary(words);
+        assertEquals("rnodern", dico.findClosestWord("rnodem", 1, new WeightedLevenshteinDistance(ConfusionTable.ocrWithRules())));
+
+        for (ConfusionTable table : new ConfusionTable[] { ConfusionTable.ocr(), ConfusionTable.ocrWithRules() }) {
+            WeightedLevenshteinDistance weighted = new WeightedLevenshteinDistance(table);
+            BKTree<String> tree = table.isMetric() ? BKTree.build(words.stream(), weighted) : null;
+            for (int k = 0; k < 300; k++) {
+                String query = randomWord(random);
+                double threshold = random.nextInt(6) / 2.0;
+                Match<String> expected = words.stream().distinct().map(w -> new Match<>(w, weighted.getDistance(query, w))).filter(m -> m.getDistance() <= threshold)
+                        .min(Match.byDistanceThenTerm()).orElse(null);
+                assertEquals(query, expected == null ? null : expected.getTerm(), dico.findClosestWord(query, threshold, weighted));
+                if (tree != null) {
+                    Match<String> found = tree.findBestMatch(query, threshold);
+                    assertEquals(query, expected == null ? null : expected.getDistance(), found == null ? null : found.getDistance());
+                }
+            }
+        }
+    }
+
+    private void checkResult(List<String> words, String query, int threshold, String result) {
+        int best = words.stream().mapToInt(w -> ld.getDistanceInt(query, w)).min().getAsInt();
+        if (best > threshold)
+            assertNull(query, result);
+        else
+            assertEquals(query + " -> " + result, best, ld.getDistanceInt(query, result));
+    }
+
+    static List<String> randomWords(Random random, int count) {
+        List<String> words = new ArrayList<>();
+        for (int k = 0; k < count; k++)
+            words.add(randomWord(random));
+        return words;
+    }
+
+    static String randomWord(Random random) {
+        int length = 2 + random.nextInt(8);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append((char) ('a' + random.nextInt(6)));
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestNGramDictionary {
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    @Test
+    public void testBasics() {
+        NGramDictionary dico = new NGramDictionary();
+        assertNull(dico.findClosestWord("total"));
+        assertTrue(dico.addNewWord("total"));
+        assertFalse(dico.addNewWord("total"));
+        dico.addNewWord("totaux");
+        dico.addNewWord("facture");
+        dico.addNewWord("");
+        assertEquals(4, (int) dico.size());
+        assertEquals("total", dico.findClosestWord("tota1"));
+        assertEquals("facture", dico.findClosestWord("factvre", 1));
+        assertNull(dico.findClosestWord("fact", 2));
+        assertEquals("facture", dico.findClosestWord("fact"));
+        assertEquals("", dico.findClosestWord("xy"));
+        assertEquals("total", dico.findClosestWord("xyzab"));
+        assertEquals("totaux", dico.findClosestWords("totau", 2).get(1).getTerm());
+
+        assertTrue(dico.removeWord("total"));
+        assertTrue(dico.removeWord(""));
+        assertFalse(dico.removeWord("total"));
+        assertEquals("totaux", dico.findClosestWord("tota1"));
+        assertEquals("totaux", dico.findClosestWord("xy"));
+        assertEquals(1, dico.findAllWithin("totau", 2).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQ() {
+        new NGramDictionary(4);
+    }
+
+    @Test
+    public void testBruteForce() {
+        Random random = new Random(72);
+        for (int q = 1; q <= NGramDictionary.MAX_Q; q++) {
+            List<String> words = TestLevenshteinDictionary.randomWords(random, 600);
+            NGramDictionary dico = new NGramDictionary(q);
+            words.forEach(dico::addNewWord);
+            for (int k = 0; k < 200; k++) {
+                String query = TestLevenshteinDictionary.randomWord(random);
+                int threshold = random.nextInt(5);
+                List<Match<String>> all = words.stream().distinct().map(w -> new Match<>(w, ld.getDistanceInt(query, w)))
+                        .sorted(Match.byDistanceThenTerm()).collect(Collectors.toList());
+                List<Match<String>> expected = all.stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList());
+                assertEquals(query, expected, dico.findAllWithin(query, threshold));
+                assertEquals(query, expected.isEmpty() ? null : expected.get(0).getTerm(), dico.findClosestWord(query, threshold));
+                assertEquals(query, all.get(0).getTerm(), dico.findClosestWord(query));
+                assertEquals(query, all.subList(0, 5), dico.findClosestWords(query, 5));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestNormalizedDictionary {
+
+    @Test
+    public void testSurfaceForms() {
+        NormalizedDictionary dico = new NormalizedDictionary();
+        assertTrue(dico.addNewWord("\u00c9t\u00e9"));
+        assertTrue(dico.addNewWord("ete"));
+        assertFalse(dico.addNewWord("ete"));
+        dico.addNewWord("Total");
+        assertEquals(3, (int) dico.size());
+        assertEquals(2, dico.keyCount());
+        assertEquals(Arrays.asList("\u00c9t\u00e9", "ete"), dico.getSurfaceForms("ete"));
+        assertTrue(dico.getSurfaceForms("\u00e9t\u00e9").isEmpty());
+
+        assertTrue(dico.contains("ET\u00c9"));
+        assertEquals("ete", dico.findClosestWord("\u00c9t\u00e8", 0));
+        assertEquals("total", dico.findClosestWord("TOTA1"));
+        assertEquals("total", dico.findClosestKey("tota1", 1));
+        assertNull(dico.findClosestKey("TOTA1", 1));
+        assertEquals("total", dico.findAllWithin("T\u00f4tal", 0).get(0).getTerm());
+
+        assertTrue(dico.removeWord("ete"));
+        assertEquals(Arrays.asList("\u00c9t\u00e9"), dico.getSurfaceForms("ete"));
+        assertTrue(dico.contains("ete"));
+        assertTrue(dico.removeWord("\u00c9t\u00e9"));
+        assertFalse(dico.contains("ete"));
+        assertEquals("total", dico.findClosestWord("ete"));
+    }
+
+    @Test
+    public void testNormalizationCache() {
+        AtomicInteger calls = new AtomicInteger();
+        NormalizedDictionary dico = new NormalizedDictionary(new LevenshteinDictionary(), word -> {
+            calls.incrementAndGet();
+            return word.toLowerCase();
+        });
+        for (int k = 0; k < 10; k++) {
+            dico.addNewWord("Facture");
+            dico.findAllWithin("FACTVRE", 1);
+        }
+        assertEquals(2, calls.get());
+        assertEquals("facture", dico.findClosestWord("FACTVRE"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonEmptyBackend() {
+        Dictionary backend = new Dictionary();
+        backend.addNewWord("total");
+        new NormalizedDictionary(backend);
+    }
+
+}
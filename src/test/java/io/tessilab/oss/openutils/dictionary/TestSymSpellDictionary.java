@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class TestSymSpellDictionary {
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    @Test
+    public void testBasics() {
+        SymSpellDictionary dico = new SymSpellDictionary();
+        assertNull(dico.findClosestWord("total"));
+        assertTrue(dico.addNewWord("total"));
+        assertFalse(dico.addNewWord("total"));
+        dico.addNewWord("totaux");
+        dico.addNewWord("facture");
+        assertTrue(dico.contains("facture"));
+        assertEquals(3, (int) dico.size());
+        assertEquals("total", dico.findClosestWord("tota1"));
+        assertEquals("facture", dico.findClosestWord("factvre", 1));
+        assertNull(dico.findClosestWord("fact", 2));
+        assertNull(dico.findClosestWord("tota1", 0));
+        assertEquals("total", dico.findClosestWord("total", 0));
+
+        assertTrue(dico.removeWord("total"));
+        assertFalse(dico.removeWord("total"));
+        assertEquals("totaux", dico.findClosestWord("tota1"));
+        assertTrue(dico.addNewWord("total"));
+        assertEquals("total", dico.findClosestWord("tota1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrefixLength() {
+        new SymSpellDictionary(2, 2);
+    }
+
+    @Test
+    public void testBruteForce() {
+        Random random = new Random(71);
+        for (int prefixLength : new int[] { 3, 5, 7, 20 }) {
+            for (int maxEditDistance = 1; maxEditDistance <= 2 && maxEditDistance < prefixLength; maxEditDistance++) {
+                List<String> words = TestLevenshteinDictionary.randomWords(random, 600);
+                SymSpellDictionary dico = new SymSpellDictionary(maxEditDistance, prefixLength);
+                words.forEach(dico::addNewWord);
+                for (int k = 0; k < 200; k++) {
+                    // queries close to the words of the dictionary
+                    String query = mutate(random, words.get(random.nextInt(words.size())), random.nextInt(4));
+                    int threshold = random.nextInt(maxEditDistance + 1);
+                    List<Match<String>> expected = words.stream().distinct().map(w -> new Match<>(w, ld.getDistanceInt(query, w)))
+                            .filter(m -> m.getDistance() <= threshold).sorted(Match.byDistanceThenTerm()).collect(Collectors.toList());
+                    assertEquals(query, expected, dico.findAllWithin(query, threshold));
+                    String closest = expected.isEmpty() ? null : expected.get(0).getTerm();
+                    assertEquals(query, closest, dico.findClosestWord(query, threshold));
+                }
+            }
+        }
+    }
+
+    private static String mutate(Random random, String word, int nbEdits) {
+        StringBuilder builder = new StringBuilder(word);
+        for (int i = 0; i < nbEdits; i++) {
+            int position = random.nextInt(builder.length() + 1);
+            char c = (char) ('a' + random.nextInt(4));
+            switch (random.nextInt(3)) {
+            case 0:
+                builder.insert(position, c);
+                break;
+            case 1:
+                if (position < builder.length())
+                    builder.deleteCharAt(position);
+                break;
+            default:
+                if (position < builder.length())
+                    builder.setCharAt(position, c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.tessilab.oss.openutils.distance.words.LevenshteinDistance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestWeightedDictionary {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    @Test
+    public void testBasics() {
+        WeightedDictionary dico = new WeightedDictionary();
+        assertNull(dico.findClosestWord("total"));
+        assertTrue(dico.addNewWord("totaux"));
+        assertTrue(dico.addNewWord("total"));
+        assertFalse(dico.addNewWord("total"));
+        assertTrue(dico.addNewWord("tot", 5));
+        assertEquals(2, dico.getCount("total"));
+        assertEquals(0, dico.getCount("facture"));
+
+        assertEquals("total", dico.findClosestWord("totax"));
+        dico.addNewWord("totaux", 2);
+        assertEquals("totaux", dico.findClosestWord("totax"));
+        assertEquals("tot", dico.findClosestWord("toto"));
+
+        assertTrue(dico.removeWord("totaux"));
+        assertEquals(0, dico.getCount("totaux"));
+        assertEquals("total", dico.findClosestWord("totax"));
+    }
+
+    @Test
+    public void testRemoveBeforeQuery() {
+        WeightedDictionary dico = new WeightedDictionary();
+        for (String word : new String[] { "total", "totaux", "facture", "factures", "montant" })
+            dico.addNewWord(word);
+        assertTrue(dico.removeWord("totaux"));
+        assertEquals("total", dico.findClosestWord("totaux"));
+
+        // the removals only clear the nodes of the compiled trie
+        assertTrue(dico.removeWord("factures"));
+        assertEquals(1, dico.getDeadCount());
+        assertEquals("facture", dico.findClosestWord("factures"));
+    }
+
+    @Test
+    public void testTiesBrokenByCount() {
+        Random random = new Random(41);
+        List<String> words = TestLevenshteinDictionary.randomWords(random, 1000);
+        WeightedDictionary dico = new WeightedDictionary();
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : words) {
+            int count = 1 + random.nextInt(20);
+            dico.addNewWord(word, count);
+            counts.merge(word, count, Integer::sum);
+        }
+        Comparator<Match<String>> order = Comparator.<Match<String>> comparingDouble(Match::getDistance)
+                .thenComparing(m -> counts.get(m.getTerm()), Comparator.reverseOrder()).thenComparing(Match::getTerm);
+
+        for (int k = 0; k < 200; k++) {
+            String query = TestLevenshteinDictionary.randomWord(random);
+            List<Match<String>> expected = counts.keySet().stream().map(w -> new Match<>(w, ld.getDistanceInt(query, w))).sorted(order)
+                    .collect(Collectors.toList());
+            assertEquals(expected.get(0).getTerm(), dico.findClosestWord(query));
+            int threshold = 1 + random.nextInt(3);
+            String within = expected.get(0).getDistance() <= threshold ? expected.get(0).getTerm() : null;
+            assertEquals(within, dico.findClosestWord(query, threshold));
+            assertEquals(expected.subList(0, 5), dico.findClosestWords(query, 5));
+            assertEquals(expected.stream().filter(m -> m.getDistance() <= threshold).collect(Collectors.toList()), dico.findAllWithin(query, threshold));
+        }
+    }
+
+    @Test
+    public void testAddKeepsTheTrie() {
+        Random random = new Random(42);
+        WeightedDictionary dico = new WeightedDictionary();
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : TestLevenshteinDictionary.randomWords(random, 1000)) {
+            dico.addNewWord(word, 1 + random.nextInt(20));
+            counts.put(word, dico.getCount(word));
+        }
+        dico.finalizeTree();
+        CompiledTrie compiled = dico.getSearchedState().trie;
+        Comparator<Match<String>> order = Comparator.<Match<String>> comparingDouble(Match::getDistance)
+                .thenComparing(m -> counts.get(m.getTerm()), Comparator.reverseOrder()).thenComparing(Match::getTerm);
+
+        List<String> known = new ArrayList<>(counts.keySet());
+        for (int k = 0; k < 2 * LevenshteinDictionary.MIN_ADDED_WORDS; k++) {
+            // new words, and occurrences of the words of the trie
+            String word = k % 2 == 0 ? TestLevenshteinDictionary.randomWord(random) : known.get(random.nextInt(known.size()));
+            dico.addNewWord(word, 1 + random.nextInt(40));
+            counts.put(word, dico.getCount(word));
+
+            String query = TestLevenshteinDictionary.randomWord(random);
+            List<Match<String>> expected = counts.keySet().stream().map(w -> new Match<>(w, ld.getDistanceInt(query, w))).sorted(order)
+                    .collect(Collectors.toList());
+            int threshold = 1 + random.nextInt(3);
+            String within = expected.get(0).getDistance() <= threshold ? expected.get(0).getTerm() : null;
+            assertEquals(query, within, dico.findClosestWord(query, threshold));
+            assertEquals(expected.subList(0, 5), dico.findClosestWords(query, 5));
+            assertSame(compiled, dico.getSearchedState().trie);
+        }
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        WeightedDictionary dico = new WeightedDictionary();
+        dico.addNewWord("total", 3);
+        dico.addNewWord("facture");
+        String path = folder.newFile().getPath();
+        dico.writeInFile(path);
+
+        WeightedDictionary read = new WeightedDictionary(path);
+        assertEquals(2, (int) read.size());
+        assertEquals(3, read.getCount("total"));
+        assertEquals(1, read.getCount("facture"));
+    }
+
+    @Test
+    public void testWordCountMap() {
+        Random random = new Random(42);
+        WordCountMap map = new WordCountMap();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int k = 0; k < 20000; k++) {
+            String word = Integer.toString(random.nextInt(500));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(word) != null, map.remove(word));
+            } else {
+                int count = 1 + random.nextInt(5);
+                assertEquals((int) expected.merge(word, count, Integer::sum), map.add(word, count));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int i = 0; i < 500; i++) {
+            String word = Integer.toString(i);
+            assertEquals((int) expected.getOrDefault(word, 0), map.get(word));
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the batch distances against the pairwise ones.
+ */
+public class TestBatchLevenshteinDistance {
+
+    private static final char[] ALPHABET = { 'a', 'b', 'c', 'e', 'é', '0', 'O', ' ' };
+
+    private BatchLevenshteinDistance batch = new BatchLevenshteinDistance();
+    private LevenshteinDistance pairwise = new LevenshteinDistance(1e-3);
+
+    @Test
+    public void testBasics() {
+        String[] candidates = { "kitten", "", "sitting", "mitten", "kitchen", "k" };
+        assertArrayEquals(new int[] { 3, 7, 0, 3, 5, 7 }, batch.distances("sitting", candidates, 10));
+        assertArrayEquals(new int[] { 3, 3, 0, 3, 3, 3 }, batch.distances("sitting", candidates, 2));
+        assertArrayEquals(new int[] { 6, 0, 7, 6, 7, 1 }, batch.distances("", candidates, 10));
+    }
+
+    @Test
+    public void testRandomCandidates() {
+        Random random = new Random(1);
+        String[] candidates = new String[1000];
+        for (int k = 0; k < candidates.length; k++)
+            candidates[k] = randomString(random, random.nextInt(15));
+        BatchLevenshteinDistance.Candidates packed = new BatchLevenshteinDistance.Candidates(candidates);
+        for (int k = 0; k < 100; k++) {
+            String query = randomString(random, random.nextInt(15));
+            int max = random.nextInt(6);
+            int[] expected = new int[candidates.length];
+            for (int c = 0; c < candidates.length; c++)
+                expected[c] = pairwise.getDistanceInt(query, candidates[c], max);
+            assertArrayEquals(query, expected, batch.distances(query, packed, max));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCandidate() {
+        batch.distances("a", new String[] { "a", null }, 1);
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        return builder.toString();
+    }
+
+}
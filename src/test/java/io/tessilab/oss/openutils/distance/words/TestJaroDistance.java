@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestJaroDistance {
+
+    private static final char[] ALPHABET = { 'a', 'b', 'c', 'd', 'e', 'o', ' ' };
+
+    private JaroDistance jaro = new JaroDistance(1e-3);
+    private JaroWinklerDistance jaroWinkler = new JaroWinklerDistance(1e-3);
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(0.944, jaro.getDistance("MARTHA", "MARHTA"), 1e-3);
+        assertEquals(0.961, jaroWinkler.getDistance("MARTHA", "MARHTA"), 1e-3);
+        assertEquals(0.822, jaro.getDistance("DWAYNE", "DUANE"), 1e-3);
+        assertEquals(0.840, jaroWinkler.getDistance("DWAYNE", "DUANE"), 1e-3);
+        assertEquals(0.767, jaro.getDistance("DIXON", "DICKSONX"), 1e-3);
+        assertEquals(0.813, jaroWinkler.getDistance("DIXON", "DICKSONX"), 1e-3);
+        assertEquals(1, jaro.getDistance("", ""), 1e-9);
+        assertEquals(0, jaro.getDistance("", "abc"), 1e-9);
+        assertEquals(0, jaroWinkler.getDistance("abc", "xyz"), 1e-9);
+    }
+
+    @Test
+    public void testReusedBuffers() {
+        Random random = new Random(1);
+        for (int k = 0; k < 5000; k++) {
+            String s1 = randomString(random, random.nextInt(30));
+            String s2 = randomString(random, random.nextInt(30));
+            assertEquals(s1 + " / " + s2, reference(s1, s2), jaro.getDistance(s1, s2), 1e-12);
+        }
+    }
+
+    @Test
+    public void testMinSimilarity() {
+        Random random = new Random(2);
+        for (int k = 0; k < 5000; k++) {
+            String s1 = randomString(random, random.nextInt(20));
+            String s2 = randomString(random, random.nextInt(20));
+            double min = random.nextInt(11) / 10.0;
+            double full = jaro.getDistance(s1, s2);
+            assertEquals(s1 + " / " + s2, full < min ? 0 : full, jaro.getDistance(s1, s2, min), 1e-12);
+            full = jaroWinkler.getDistance(s1, s2);
+            assertEquals(s1 + " / " + s2, full < min ? 0 : full, jaroWinkler.getDistance(s1, s2, min), 1e-12);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrefixScale() {
+        new JaroWinklerDistance(1e-3, 0.3);
+    }
+
+    /**
+     * The straightforward implementation, allocating its marks at each call.
+     */
+    private static double reference(String s1, String s2) {
+        int l1 = s1.length();
+        int l2 = s2.length();
+        if (l1 == 0 && l2 == 0)
+            return 1;
+        int window = Integer.max(l1, l2) / 2 - 1;
+        boolean[] matched1 = new boolean[l1];
+        boolean[] matched2 = new boolean[l2];
+        int matches = 0;
+        for (int i = 0; i < l1; i++) {
+            for (int j = Integer.max(0, i - window); j < Integer.min(i + window + 1, l2); j++) {
+                if (!matched2[j] && s1.charAt(i) == s2.charAt(j)) {
+                    matched1[i] = matched2[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0)
+            return 0;
+        int transpositions = 0;
+        for (int i = 0, k = 0; i < l1; i++) {
+            if (!matched1[i])
+                continue;
+            while (!matched2[k])
+                k++;
+            if (s1.charAt(i) != s2.charAt(k++))
+                transpositions++;
+        }
+        return ((double) matches / l1 + (double) matches / l2 + (matches - transpositions / 2.0) / matches) / 3;
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestLevenshteinDistance {
+
+    private LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+
+    @Test
+    public void testBasics() {
+        assertEquals(0, ld.getDistanceInt("", ""));
+        assertEquals(4, ld.getDistanceInt("", "abcd"));
+        assertEquals(4, ld.getDistanceInt("abcd", ""));
+        assertEquals(0, ld.getDistanceInt("facture", "facture"));
+        assertEquals(3, ld.getDistanceInt("kitten", "sitting"));
+        assertEquals(3, ld.getDistanceInt("sitting", "kitten"));
+        assertEquals(2, ld.getDistanceInt("flaw", "lawn"));
+        assertEquals(3.0, ld.getDistance("saturday", "sunday"), 1e-9);
+    }
+
+    @Test
+    public void testLongStrings() {
+        String s1 = "the quick brown fox jumps over the lazy dog, twice and again";
+        String s2 = "the quack brown fax jumped over the lazy dogs, twice and again!";
+        assertEquals(referenceDistance(s1, s2), ld.getDistanceInt(s1, s2));
+    }
+
+    @Test
+    public void testBounded() {
+        assertEquals(3, ld.getDistanceInt("kitten", "sitting", 3));
+        assertEquals(3, ld.getDistanceInt("kitten", "sitting", 10));
+        assertEquals(3, ld.getDistanceInt("kitten", "sitting", 2));
+        assertEquals(1, ld.getDistanceInt("kitten", "sitting", 0));
+        // the length difference alone is enough
+        assertEquals(2, ld.getDistanceInt("a", "abcdef", 1));
+        assertEquals(0, ld.getDistanceInt("", "", 0));
+        assertTrue(ld.isCloseEnough("kitten", "sitting", 3.0));
+        assertFalse(ld.isCloseEnough("kitten", "sitting", 2.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBoundedKONegative() {
+        ld.getDistanceInt("kitten", "sitting", -1);
+    }
+
+    @Test
+    public void testBoundedRandom() {
+        Random random = new Random(42);
+        for (int k = 0; k < 2000; k++) {
+            String s1 = randomString(random, 12);
+            String s2 = randomString(random, 12);
+            int expected = referenceDistance(s1, s2);
+            int max = random.nextInt(6);
+            assertEquals(expected, ld.getDistanceInt(s1, s2));
+            assertEquals(Math.min(expected, max + 1), ld.getDistanceInt(s1, s2, max));
+        }
+    }
+
+    @Test
+    public void testCallerSuppliedRows() {
+        int[] row1 = new int[8];
+        int[] row2 = new int[8];
+        assertEquals(3, LevenshteinDistance.boundedDistance("kitten", "sitting", 5, row1, row2));
+        assertEquals(2, LevenshteinDistance.boundedDistance(new StringBuilder("flaw"), "lawn", 5, row1, row2));
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        Random random = new Random(7);
+        List<String[]> pairs = new ArrayList<>();
+        for (int k = 0; k < 500; k++)
+            pairs.add(new String[] { randomString(random, 40), randomString(random, 40) });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (String[] pair : pairs) {
+                        if (ld.getDistanceInt(pair[0], pair[1]) != referenceDistance(pair[0], pair[1]))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> f : futures)
+                assertTrue(f.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static String randomString(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append((char) ('a' + random.nextInt(4)));
+        return builder.toString();
+    }
+
+    static int referenceDistance(String s1, String s2) {
+        int[][] d = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++)
+            d[i][0] = i;
+        for (int j = 0; j <= s2.length(); j++)
+            d[0][j] = j;
+        for (int i = 1; i <= s1.length(); i++) {
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s1.length()][s2.length()];
+    }
+
+}
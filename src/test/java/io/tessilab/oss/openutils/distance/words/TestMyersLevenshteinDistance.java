@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the bit-parallel distance against a plain dynamic programming on the
+ * full matrix.
+ */
+public class TestMyersLevenshteinDistance {
+
+    private static final char[] LATIN = { 'a', 'b', 'c', 'e', 'é', 'è', '0', 'O', ' ' };
+    private static final char[] MIXED = { 'a', 'b', '€', 'Ω', 'ж', 'é', '1', 'l' };
+
+    // characters outside the BMP, two chars each, sharing their high surrogate
+    private static final String[] NON_BMP = { "\uD83D\uDE00", "\uD83D\uDE01", "\uD835\uDC00", "a", "b" };
+
+    private MyersLevenshteinDistance myers = new MyersLevenshteinDistance();
+
+    @Test
+    public void testBasics() {
+        assertEquals(0, myers.getDistanceInt("", ""));
+        assertEquals(3, myers.getDistanceInt("", "abc"));
+        assertEquals(3, myers.getDistanceInt("abc", ""));
+        assertEquals(0, myers.getDistanceInt("facture", "facture"));
+        assertEquals(3, myers.getDistanceInt("kitten", "sitting"));
+        assertEquals(2, myers.getDistanceInt("flaw", "lawn"));
+        assertEquals(3.0, myers.getDistance("saturday", "sunday"), 1e-9);
+    }
+
+    @Test
+    public void testShortTokens() {
+        checkRandomPairs(new Random(1), LATIN, 0, 20, 5000);
+    }
+
+    @Test
+    public void testNonLatinCharacters() {
+        checkRandomPairs(new Random(2), MIXED, 0, 20, 3000);
+        checkRandomPairs(new Random(3), MIXED, 60, 140, 300);
+    }
+
+    @Test
+    public void testWordBoundaries() {
+        Random random = new Random(4);
+        int[] lengths = { 1, 63, 64, 65, 127, 128, 129, 200 };
+        for (int l1 : lengths) {
+            for (int l2 : lengths) {
+                for (int k = 0; k < 5; k++) {
+                    String s1 = randomString(random, LATIN, l1);
+                    String s2 = randomString(random, LATIN, l2);
+                    checkPair(s1, s2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNonBmpCharacters() {
+        Random random = new Random(7);
+        for (int k = 0; k < 1000; k++) {
+            int l1 = random.nextInt(k < 500 ? 12 : 90);
+            int l2 = random.nextInt(k < 500 ? 12 : 90);
+            checkPair(randomCodePoints(random, l1), randomCodePoints(random, l2));
+        }
+    }
+
+    @Test
+    public void testRepeatedCharacters() {
+        Random random = new Random(8);
+        int[] lengths = { 1, 5, 63, 64, 65, 130 };
+        for (int l1 : lengths) {
+            for (int l2 : lengths) {
+                checkPair(repeat('a', l1), repeat('a', l2));
+                checkPair(repeat('a', l1), repeat('b', l2));
+                // runs of a few characters
+                for (int k = 0; k < 5; k++) {
+                    String s1 = randomRuns(random, l1);
+                    String s2 = randomRuns(random, l2);
+                    checkPair(s1, s2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLongPatterns() {
+        checkRandomPairs(new Random(5), LATIN, 60, 300, 300);
+    }
+
+    @Test
+    public void testCloseLongStrings() {
+        Random random = new Random(6);
+        for (int k = 0; k < 200; k++) {
+            String s1 = randomString(random, LATIN, 50 + random.nextInt(200));
+            StringBuilder builder = new StringBuilder(s1);
+            for (int e = 0; e < 5 && builder.length() > 0; e++) {
+                int pos = random.nextInt(builder.length());
+                switch (random.nextInt(3)) {
+                case 0:
+                    builder.deleteCharAt(pos);
+                    break;
+                case 1:
+                    builder.insert(pos, MIXED[random.nextInt(MIXED.length)]);
+                    break;
+                default:
+                    builder.setCharAt(pos, LATIN[random.nextInt(LATIN.length)]);
+                }
+            }
+            checkPair(s1, builder.toString());
+        }
+    }
+
+    private void checkRandomPairs(Random random, char[] alphabet, int minLength, int maxLength, int count) {
+        for (int k = 0; k < count; k++) {
+            String s1 = randomString(random, alphabet, minLength + random.nextInt(maxLength - minLength + 1));
+            String s2 = randomString(random, alphabet, minLength + random.nextInt(maxLength - minLength + 1));
+            checkPair(s1, s2);
+        }
+    }
+
+    private void checkPair(String s1, String s2) {
+        int expected = referenceDistance(s1, s2);
+        assertEquals("'" + s1 + "' / '" + s2 + "'", expected, myers.getDistanceInt(s1, s2));
+        assertEquals("'" + s2 + "' / '" + s1 + "'", expected, myers.getDistanceInt(s2, s1));
+    }
+
+    /**
+     * The Levenshtein distance computed on the whole matrix, without any
+     * bound or band.
+     */
+    private static int referenceDistance(String s1, String s2) {
+        int[][] mat = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++)
+            mat[i][0] = i;
+        for (int j = 0; j <= s2.length(); j++)
+            mat[0][j] = j;
+        for (int i = 1; i <= s1.length(); i++) {
+            for (int j = 1; j <= s2.length(); j++) {
+                int replace = mat[i - 1][j - 1] + (s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1);
+                mat[i][j] = Math.min(replace, Math.min(mat[i - 1][j], mat[i][j - 1]) + 1);
+            }
+        }
+        return mat[s1.length()][s2.length()];
+    }
+
+    private static String randomCodePoints(Random random, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            builder.append(NON_BMP[random.nextInt(NON_BMP.length)]);
+        return builder.toString();
+    }
+
+    private static String randomRuns(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            char c = LATIN[random.nextInt(3)];
+            for (int run = 1 + random.nextInt(10); run > 0 && builder.length() < length; run--)
+                builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static String repeat(char c, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append(c);
+        return builder.toString();
+    }
+
+    private static String randomString(Random random, char[] alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append(alphabet[random.nextInt(alphabet.length)]);
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.distance.words;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestWeightedLevenshteinDistance {
+
+    private static final String ALPHABET = "rnmcldw0O1Ilab";
+
+    private static String randomString(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return builder.toString();
+    }
+
+    @Test
+    public void testDefaultCosts() {
+        WeightedLevenshteinDistance weighted = new WeightedLevenshteinDistance(new ConfusionTable());
+        LevenshteinDistance ld = new LevenshteinDistance(1e-3);
+        Random random = new Random(91);
+        for (int k = 0; k < 1000; k++) {
+            String s1 = TestLevenshteinDistance.randomString(random, 12);
+            String s2 = TestLevenshteinDistance.randomString(random, 12);
+            assertEquals(ld.getDistance(s1, s2), weighted.getDistance(s1, s2), 1e-9);
+        }
+    }
+
+    @Test
+    public void testOcrCosts() {
+        WeightedLevenshteinDistance weighted = new WeightedLevenshteinDistance(ConfusionTable.ocrWithRules());
+        assertEquals(0, weighted.getDistance("total", "total"), 1e-9);
+        assertEquals(0.5, weighted.getDistance("T0TAL", "TOTAL"), 1e-9);
+        assertEquals(0.5, weighted.getDistance("rnodern", "modern"), 1e-9);
+        assertEquals(0.5, weighted.getDistance("modern", "rnodern"), 1e-9);
+        assertEquals(1.5, weighted.getDistance("1nvoice", "lnvoic"), 1e-9);
+        assertEquals(1.5, weighted.getDistance("total", "tota1x"), 1e-9);
+        assertEquals(0.5, weighted.getDistance("caf\u00e9", "cafe"), 1e-9);
+        // non Latin chars use the default costs
+        assertEquals(1, weighted.getDistance("\u0416a", "\u0436a"), 1e-9);
+    }
+
+    @Test
+    public void testBounded() {
+        WeightedLevenshteinDistance weighted = new WeightedLevenshteinDistance(ConfusionTable.ocrWithRules());
+        Random random = new Random(92);
+        for (int k = 0; k < 1000; k++) {
+            String s1 = randomString(random, 10);
+            String s2 = randomString(random, 10);
+            double distance = weighted.getDistance(s1, s2);
+            double max = random.nextInt(8) / 2.0;
+            double bounded = weighted.getDistance(s1, s2, max);
+            if (distance <= max)
+                assertEquals(distance, bounded, 1e-9);
+            else
+                assertTrue(bounded > max);
+        }
+    }
+
+    @Test
+    public void testMetric() {
+        assertTrue(ConfusionTable.ocr().isMetric());
+        WeightedLevenshteinDistance weighted = new WeightedLevenshteinDistance(ConfusionTable.ocr());
+        Random random = new Random(93);
+        for (int k = 0; k < 5000; k++) {
+            String s1 = randomString(random, 6);
+            String s2 = randomString(random, 6);
+            String s3 = randomString(random, 6);
+            double d12 = weighted.getDistance(s1, s2);
+            assertEquals(d12, weighted.getDistance(s2, s1), 1e-9);
+            assertTrue(s1 + " " + s2 + " " + s3, weighted.getDistance(s1, s3) <= d12 + weighted.getDistance(s2, s3) + 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCost() {
+        new ConfusionTable().setSubstitutionCost('a', 'b', 0.1);
+    }
+
+}
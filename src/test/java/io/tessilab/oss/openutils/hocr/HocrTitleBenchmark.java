@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import io.tessilab.oss.openutils.FileUtils;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.Jsoup;
+
+/**
+ * Compares the title parsing of {@link HocrTitle} with the previous regex and
+ * split based parsing, on the titles of a real document. Run it with the test
+ * classpath: it is not a unit test.
+ */
+public class HocrTitleBenchmark {
+
+    private static final Pattern PATTERN_BBOX_AND_CONF = Pattern.compile("bbox (.*); x_wconf (.*).*$");
+
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 2000;
+
+    public static void main(String[] args) throws IOException {
+        String[] titles = Jsoup.parse(FileUtils.fileToString("/documents/greatReceipt.html", true))
+                .getElementsByAttribute(HTMLConstants.TITLE).stream().map(e -> e.attr(HTMLConstants.TITLE))
+                .toArray(String[]::new);
+        System.out.println(titles.length + " titles");
+
+        HocrTitle title = new HocrTitle();
+        for (int round = 0; round < ROUNDS; round++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int k = 0; k < ITERATIONS; k++)
+                for (String t : titles)
+                    sink += legacyParse(t);
+            long legacy = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int k = 0; k < ITERATIONS; k++)
+                for (String t : titles)
+                    sink -= parse(title, t);
+            long scanner = System.nanoTime() - start;
+
+            long calls = (long) ITERATIONS * titles.length;
+            System.out.printf("round %d: regex/split %.1f ns/title, scanner %.1f ns/title (check %d)%n", round,
+                    (double) legacy / calls, (double) scanner / calls, sink);
+        }
+    }
+
+    private static long legacyParse(String title) {
+        long res = 0;
+        if (title.contains(HocrTitle.BBOX))
+            res += legacyReadBoundingBox(title).width;
+        Matcher matcher = PATTERN_BBOX_AND_CONF.matcher(title);
+        if (matcher.matches())
+            res += (long) Double.parseDouble(matcher.group(2));
+        if (title.contains(HocrTitle.PAGE_NUMBER))
+            res += Integer.parseInt(title.split(HocrTitle.PAGE_NUMBER)[1].trim());
+        return res;
+    }
+
+    private static long parse(HocrTitle title, String t) {
+        long res = 0;
+        title.parse(t);
+        if (title.hasBBox())
+            res += title.getX1() - title.getX0();
+        if (title.hasConfidence())
+            res += (long) title.getConfidence();
+        if (title.hasPageNumber())
+            res += title.getPageNumber();
+        return res;
+    }
+
+    private static Rectangle legacyReadBoundingBox(String str) {
+        String[] splits = str.split(";?\\s+");
+        int index = 0;
+        while (!"bbox".equals(splits[index]))
+            index++;
+        index++;
+        int x = Integer.parseInt(splits[index]);
+        int y = Integer.parseInt(splits[index + 1]);
+        int w = Integer.parseInt(splits[index + 2]) - x;
+        int h = Integer.parseInt(splits[index + 3]) - y;
+        return new Rectangle(x, y, w, h);
+    }
+
+}
@@ -17,13 +17,23 @@ package io.tessilab.oss.openutils.hocr;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import io.tessilab.oss.openutils.FileUtils;
 import io.tessilab.oss.openutils.testing.HocrTestUtilities;
 
 import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import org.junit.Test;
@@ -178,4 +188,114 @@ public class TestHocrDocument {
         assertEquals(out, out2);
     }
 
+    @Test
+    public void testLazy() throws IOException, URISyntaxException {
+        for (String resourcePath : new String[] { "/documents/greatReceipt.html", "/documents/meta2Pages.html",
+                "/documents/smallReceipt.html" }) {
+            HocrDocument expected = new HocrDocument(FileUtils.fileToString(resourcePath, true));
+            HocrDocument lazy = new HocrDocument(resourcePath(resourcePath), 1);
+            assertEquals(resourcePath, expected.getNbOfPages(), lazy.getNbOfPages());
+            assertEquals(resourcePath, expected.toHocrString(), lazy.toHocrString());
+        }
+    }
+
+    @Test
+    public void testLazyEviction() throws IOException, URISyntaxException {
+        HocrDocument hd = new HocrDocument(resourcePath("/documents/meta2Pages.html"), 1);
+        assertEquals(2, hd.getNbOfPages());
+        assertNull(hd.getPage(2));
+
+        HocrPage page0 = hd.getPage(0);
+        assertEquals(0, page0.getPageNumber());
+        assertSame(page0, hd.getPage(0));
+        int nbWords = page0.getAllWords().size();
+
+        // page 0 is evicted, and parsed again once nobody holds it
+        WeakReference<HocrPage> evicted = new WeakReference<>(page0);
+        page0 = null;
+        assertEquals(1, hd.getPage(1).getPageNumber());
+        for (int k = 0; k < 100 && evicted.get() != null; k++)
+            System.gc();
+        HocrPage page0Again = hd.getPage(0);
+        assertEquals(0, page0Again.getPageNumber());
+        assertEquals(nbWords, page0Again.getAllWords().size());
+
+        // editing keeps all the pages
+        hd.createNewPage(2);
+        assertEquals(3, hd.getNbOfPages());
+        assertSame(page0Again, hd.getPage(0));
+        HocrPage page1 = hd.getPage(1);
+        hd.getPage(2);
+        assertSame(page0Again, hd.getPage(0));
+        assertSame(page1, hd.getPage(1));
+    }
+
+    @Test
+    public void testLazyEditEvictedPage() throws IOException, URISyntaxException {
+        HocrDocument hd = new HocrDocument(resourcePath("/documents/meta2Pages.html"), 1);
+        HocrPage page0 = hd.getPage(0);
+        hd.getPage(1);
+
+        // page 0 is evicted, but still held: the same page is given back
+        assertSame(page0, hd.getPage(0));
+        hd.getPage(1);
+
+        // page 0 is evicted again, then edited
+        page0.addWord(new HocrXWord("dummy", new Rectangle(0, 10, 30, 40), null, "evictedsauce", 1.0));
+        assertSame(page0, hd.getPage(0));
+        assertTrue(hd.toHocrString().contains("evictedsauce"));
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        // a document of 20 pages
+        String page = FileUtils.fileToString("/documents/meta2Pages.html", true);
+        String pages = page.substring(page.indexOf("<div class=\"ocr_page\""), page.lastIndexOf("</body>"));
+        StringBuilder html = new StringBuilder(page.substring(0, page.indexOf("<div class=\"ocr_page\"")));
+        for (int k = 0; k < 10; k++)
+            html.append(pages.replace("ppageno 1\"", "ppageno " + (2 * k + 1) + "\"").replace("ppageno 0\"", "ppageno " + (2 * k) + "\""));
+        html.append("</body></html>");
+
+        HocrDocument expected = new HocrDocument(html.toString());
+        assertEquals(20, expected.getNbOfPages());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            HocrDocument parallel = new HocrDocument(html.toString(), executor);
+            assertEquals(20, parallel.getNbOfPages());
+            assertEquals(expected.toHocrString(), parallel.toHocrString());
+
+            // the same ids are given when the documents are edited
+            expected.createNewPage(20);
+            parallel.createNewPage(20);
+            assertEquals(expected.toHocrString(), parallel.toHocrString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        for (String resourcePath : new String[] { "/documents/greatReceipt.html", "/documents/meta2Pages.html",
+                "/documents/smallReceipt.html" }) {
+            HocrDocument hd = new HocrDocument(FileUtils.fileToString(resourcePath, true));
+            StringWriter writer = new StringWriter();
+            hd.writeTo(writer);
+            assertEquals(resourcePath, hd.toHocrString(), writer.toString());
+        }
+
+        // escaped values, and a page without words
+        HocrDocument hd = new HocrDocument();
+        HocrPage page = hd.createNewPage(0);
+        page.addWord(new HocrXWord("dummy", new Rectangle(1, 2, 3, 4), null, "a & <b>  \"c\"\u00a0d\u20ac", 90.5));
+        page.addWord(new HocrXWord("dummy", new Rectangle(5, 6, 7, 8), null, "", 10));
+        hd.createNewPage(1);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        hd.writeTo(stream);
+        assertEquals(hd.toHocrString(), new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private Path resourcePath(String resourcePath) throws URISyntaxException {
+        return Paths.get(getClass().getResource(resourcePath).toURI());
+    }
+
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import io.tessilab.oss.openutils.FileUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class TestHocrPageReader {
+
+    private static final String[] DOCUMENTS = { "/documents/greatReceipt.html", "/documents/meta2Pages.html",
+            "/documents/smallReceipt.html" };
+
+    @Test
+    public void testSameAsDom() throws IOException {
+        for (String resourcePath : DOCUMENTS) {
+            String htmlContent = FileUtils.fileToString(resourcePath, true);
+            HocrDocument expected = new HocrDocument(htmlContent);
+            HocrDocument actual = new HocrDocument(new StringReader(htmlContent));
+            assertEquals(resourcePath, expected.getNbOfPages(), actual.getNbOfPages());
+            assertEquals(resourcePath, expected.toHocrString(), actual.toHocrString());
+        }
+    }
+
+    @Test
+    public void testPageByPage() throws IOException, HocrSyntaxException {
+        String html = "<!DOCTYPE html><html><head><title>a <div class='ocr_page'></title>"
+                + "<script>var s = \"<div class='ocr_page'>\";</script></head><body>"
+                + "<!-- <div class=\"ocr_page\"> -->"
+                + "<div class=\"ocr_page\" id=\"page_1\" title=\"image &quot;&quot;; bbox 0 0 10 10; ppageno 0\">"
+                + "<div class=\"ocr_carea\" id=\"block_1_1\" title=\"bbox 0 0 5 5\"><div></div></div><br/></div>"
+                + "<div class=\"ocr_pages xocr_page\" title=\"ppageno 5\"></div>"
+                + "<DIV CLASS=\"other\tocr_page \" ID=page_2 title='image \"\"; bbox 0 0 20 20; ppageno 1'></DIV>"
+                + "</body></html>";
+        HocrDocument document = new HocrDocument();
+        try (HocrPageReader reader = new HocrPageReader(new StringReader(html), document)) {
+            HocrPage page = reader.nextPage();
+            assertEquals(0, page.getPageNumber());
+            assertEquals(1, page.getChilds().size());
+            assertEquals(10, page.getBBox().width);
+
+            page = reader.nextPage();
+            assertEquals(1, page.getPageNumber());
+            assertEquals(20, page.getBBox().height);
+
+            assertNull(reader.nextPage());
+            assertNull(reader.nextPage());
+        }
+        assertEquals(0, document.getNbOfPages());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPage() throws IOException {
+        new HocrDocument(new StringReader("<html><body><div class=\"ocr_carea\"></div></body></html>"));
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+
+import org.junit.Test;
+
+public class TestHocrTitle {
+
+    @Test
+    public void testParse() {
+        HocrTitle title = new HocrTitle().parse("bbox 1284 300 1316 350; baseline 0.015 -5; x_wconf 82");
+        assertTrue(title.hasBBox());
+        assertEquals(new Rectangle(1284, 300, 32, 50), title.getBBox());
+        assertTrue(title.hasBaseline());
+        assertEquals(0.015, title.getBaselineSlope(), 0);
+        assertEquals(-5, title.getBaselineOffset(), 0);
+        assertTrue(title.hasConfidence());
+        assertEquals(82, title.getConfidence(), 0);
+        assertFalse(title.hasPageNumber());
+
+        // the parser is reused: the previous properties are forgotten
+        title.parse("image \"/tmp/a; b.png\";  bbox 0 0 3572 5259 ;ppageno 7");
+        assertEquals(new Rectangle(0, 0, 3572, 5259), title.getBBox());
+        assertTrue(title.hasPageNumber());
+        assertEquals(7, title.getPageNumber());
+        assertFalse(title.hasConfidence());
+        assertFalse(title.hasBaseline());
+    }
+
+    @Test
+    public void testMalformed() {
+        HocrTitle title = new HocrTitle();
+        assertFalse(title.parse(null).hasBBox());
+        assertFalse(title.parse("").hasBBox());
+        assertFalse(title.parse("bbox 1 2 3").hasBBox());
+        assertFalse(title.parse("bbox 1 2 3 4 5").hasBBox());
+        assertFalse(title.parse("bbox 1 2 3 a").hasBBox());
+        assertFalse(title.parse("bboxes 1 2 3 4").hasBBox());
+        assertFalse(title.parse("x_wconf high").hasConfidence());
+
+        // a malformed property does not hide the other ones
+        title.parse("bbox 1 2; x_wconf 93.5;;ppageno 2");
+        assertFalse(title.hasBBox());
+        assertEquals(93.5, title.getConfidence(), 0);
+        assertEquals(2, title.getPageNumber());
+    }
+
+    @Test
+    public void testParseDouble() {
+        String[] numbers = { "0", "-0", "+3", "93", " 93.25 ", "-12.5", ".5", "5.", "0.1", "0.3", "123456.789012345",
+                "1e3", "-2.5E-4", "0.12345678901234567", "NaN", "Infinity" };
+        for (String number : numbers)
+            assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                    Double.doubleToLongBits(HocrTitle.parseDouble(number)));
+        for (String number : new String[] { "", ".", "-", "1.2.3", "12a" }) {
+            try {
+                HocrTitle.parseDouble(number);
+                throw new AssertionError(number);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Tessi lab.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.tessilab.oss.openutils.hocr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Tag;
+import org.junit.Test;
+
+public class TestHocrWriter {
+
+    @Test
+    public void testSameAsJsoup() throws IOException {
+        Element body = new Element(Tag.valueOf("body"), "");
+        Element div = body.appendElement("div").attr("class", "a\"<>&\u00a0b").attr("id", (String) null);
+        div.appendText(" ");
+        div.appendElement("meta").attr("name", "x");
+        div.appendElement("foo");
+        div.appendText("tail");
+        Element p = body.appendElement("p");
+        p.appendElement("span").appendText("  x <\u00a0&\" \n y ");
+        p.appendElement("br");
+        body.appendElement("pre").appendText(" a \n  b ");
+        body.appendElement("div").appendText("text");
+        body.appendElement("div");
+        body.appendText("t");
+
+        StringWriter writer = new StringWriter();
+        HocrWriter out = new HocrWriter(writer);
+        out.element(body);
+        out.flush();
+        assertEquals(body.outerHtml(), writer.toString());
+    }
+
+    @Test
+    public void testLongOutput() throws IOException {
+        // more than the buffer
+        Element div = new Element(Tag.valueOf("div"), "");
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < 5000; k++) {
+            div.appendElement("span").attr("title", "bbox " + k).appendText("word" + k);
+            text.append("&<>");
+        }
+        div.appendElement("span").appendText(text.toString());
+
+        StringWriter writer = new StringWriter();
+        HocrWriter out = new HocrWriter(writer);
+        out.element(div);
+        out.flush();
+        assertEquals(div.outerHtml(), writer.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAttributeAfterChild() throws IOException {
+        HocrWriter out = new HocrWriter(new StringWriter());
+        out.startElement("div");
+        out.text("a");
+        out.attribute("id", "b");
+    }
+
+}